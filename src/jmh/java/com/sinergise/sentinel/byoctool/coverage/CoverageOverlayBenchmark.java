@@ -0,0 +1,109 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.coverage.Vectorization.AffineTransform;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.operation.buffer.BufferOp;
+import org.locationtech.jts.operation.buffer.BufferParameters;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Intersects the traced coverage of two bands on different grids, a 10 m and a 20 m one shifted
+ * by half of a 10 m pixel, and shrinks the intersection by a negative buffer of 10 pixels. CLASSIC
+ * uses the floating precision overlay and buffer {@link CoverageCalculator} used before, NG the
+ * snap-rounding OverlayNG and fixed precision buffer of {@link CoverageOverlay}.
+ *
+ * <p>The bands are synthetic, not real imagery: masks with a ragged diagonal scene edge and
+ * randomly scattered single-pixel no-data holes, traced with {@link ScanlinePolygonizer}. Real
+ * coverage has fewer, larger holes, so absolute timings are only indicative.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CoverageOverlayBenchmark {
+
+  private static final int SIZE = 2048;
+  private static final double PIXEL_SIZE = 10;
+  private static final double MIN_X = 500000;
+  private static final double MAX_Y = 5000000;
+
+  private static final BufferParameters BUFFER_PARAMETERS =
+      new BufferParameters(1, BufferParameters.CAP_SQUARE, BufferParameters.JOIN_MITRE, 10);
+
+  @Param({"CLASSIC", "NG"})
+  public String overlay;
+
+  private Geometry fine;
+  private Geometry coarse;
+  private Geometry coverage;
+  private Envelope tileEnvelope;
+  private PrecisionModel precisionModel;
+
+  @Setup
+  public void setUp() {
+    fine = trace(SIZE, new AffineTransform(PIXEL_SIZE, -PIXEL_SIZE, MIN_X, MAX_Y), 1);
+    coarse = trace(SIZE / 2, new AffineTransform(
+        2 * PIXEL_SIZE, -2 * PIXEL_SIZE, MIN_X - PIXEL_SIZE / 2, MAX_Y + PIXEL_SIZE / 2), 2);
+    tileEnvelope = new Envelope(MIN_X, MIN_X + SIZE * PIXEL_SIZE, MAX_Y - SIZE * PIXEL_SIZE, MAX_Y);
+    precisionModel = CoverageOverlay.precisionModel(2 * PIXEL_SIZE);
+    coverage = DouglasPeuckerSimplifier.simplify(
+        CoverageOverlay.intersection(fine, coarse, precisionModel), 0);
+  }
+
+  private static Geometry trace(int size, AffineTransform affine, long seed) {
+    Random random = new Random(seed);
+    long[] rowBits = new long[RowBits.words(size)];
+
+    try (ValidMask mask = new ValidMask(size, size)) {
+      for (int y = 0; y < size; y++) {
+        RowBits.clear(rowBits, size);
+        int edge = size / 4 + y / 2 + random.nextInt(16 * size / SIZE);
+
+        for (int x = edge; x < size; x++) {
+          if (random.nextInt(1000) != 0) {
+            rowBits[x >>> 6] |= 1L << x;
+          }
+        }
+
+        mask.setRow(y, rowBits);
+      }
+
+      return ScanlinePolygonizer.polygonize(mask, affine);
+    }
+  }
+
+  @Benchmark
+  public Geometry intersection() {
+    if (overlay.equals("CLASSIC")) {
+      return fine.intersection(coarse);
+    }
+
+    return CoverageOverlay.intersection(fine, coarse, precisionModel);
+  }
+
+  @Benchmark
+  public Geometry shrink() {
+    double distance = 10 * 2 * PIXEL_SIZE;
+
+    if (overlay.equals("CLASSIC")) {
+      Geometry tile = coverage.getFactory().toGeometry(tileEnvelope);
+      Geometry coverageInverse = tile.difference(coverage);
+      Geometry inverseBuf = BufferOp.bufferOp(coverageInverse, distance, BUFFER_PARAMETERS);
+      inverseBuf = DouglasPeuckerSimplifier.simplify(inverseBuf, 0);
+      return coverage.difference(inverseBuf);
+    }
+
+    return CoverageOverlay.shrink(coverage, tileEnvelope, distance, precisionModel);
+  }
+}
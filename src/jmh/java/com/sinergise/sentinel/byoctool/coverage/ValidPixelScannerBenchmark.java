@@ -0,0 +1,132 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Finds runs of valid pixels in a strip of one tile row with the boxed per-pixel loop
+ * {@link Vectorization} used before, with the scalar {@link ValidPixelScanner} and with the
+ * vectorized one. All count the runs instead of building geometries, which costs the same either
+ * way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ValidPixelScannerBenchmark {
+
+  private static final int WIDTH = 8192;
+  private static final int HEIGHT = 1024;
+  private static final int NO_DATA = 0;
+
+  @Param({"BYTE", "USHORT", "SHORT", "INT", "FLOAT", "DOUBLE"})
+  public String dataType;
+
+  private Raster raster;
+
+  @Setup
+  public void setUp() {
+    int type;
+    switch (dataType) {
+      case "BYTE":
+        type = DataBuffer.TYPE_BYTE;
+        break;
+      case "USHORT":
+        type = DataBuffer.TYPE_USHORT;
+        break;
+      case "SHORT":
+        type = DataBuffer.TYPE_SHORT;
+        break;
+      case "INT":
+        type = DataBuffer.TYPE_INT;
+        break;
+      case "FLOAT":
+        type = DataBuffer.TYPE_FLOAT;
+        break;
+      default:
+        type = DataBuffer.TYPE_DOUBLE;
+    }
+
+    WritableRaster writableRaster = Raster.createWritableRaster(
+        new BandedSampleModel(type, WIDTH, HEIGHT, 1), new Point(0, 0));
+    Random random = new Random(42);
+
+    // a ragged diagonal edge with a few no-data holes, like a scene boundary
+    for (int y = 0; y < HEIGHT; y++) {
+      int edge = WIDTH / 4 + y + random.nextInt(64);
+      for (int x = 0; x < WIDTH; x++) {
+        boolean valid = x > edge && random.nextInt(1000) != 0;
+        writableRaster.setSample(x, y, 0, valid ? 1 + random.nextInt(200) : NO_DATA);
+      }
+    }
+
+    raster = writableRaster;
+  }
+
+  @Benchmark
+  public int boxed() {
+    boolean isFloatDoubleType = raster.getTransferType() == DataBuffer.TYPE_FLOAT
+        || raster.getTransferType() == DataBuffer.TYPE_DOUBLE;
+    Integer noDataValue = NO_DATA;
+    Predicate<Number> predicate = val -> !val.equals(noDataValue);
+    int runs = 0;
+
+    for (int y = 0; y < raster.getHeight(); y++) {
+      boolean inRun = false;
+
+      for (int x = 0; x < raster.getWidth(); x++) {
+        Number value = isFloatDoubleType
+            ? (Number) raster.getSampleDouble(x, y, 0)
+            : (Number) raster.getSample(x, y, 0);
+
+        if (predicate.test(value)) {
+          inRun = true;
+        } else if (inRun) {
+          runs++;
+          inRun = false;
+        }
+      }
+
+      if (inRun) {
+        runs++;
+      }
+    }
+
+    return runs;
+  }
+
+  @Benchmark
+  public int scanner() {
+    return countRuns(ValidPixelScanner.of(raster, NO_DATA, false));
+  }
+
+  @Benchmark
+  public int vectorScanner() {
+    return countRuns(ValidPixelScanner.of(raster, NO_DATA, true));
+  }
+
+  private int countRuns(ValidPixelScanner scanner) {
+    long[] rowBits = new long[RowBits.words(raster.getWidth())];
+    int[] runs = {0};
+
+    for (int y = 0; y < raster.getHeight(); y++) {
+      scanner.scanRow(y, rowBits);
+      RowBits.forEachRun(rowBits, raster.getWidth(), (start, end) -> runs[0]++);
+    }
+
+    return runs[0];
+  }
+}
@@ -0,0 +1,69 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.cli.CoverageTracingConfig.TracingEngine;
+import com.sinergise.sentinel.byoctool.coverage.Vectorization.AffineTransform;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Vectorizes a mask with a ragged diagonal edge and scattered no-data holes, like the boundary of
+ * a scene, with each of the tracing engines on a single thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VectorizationBenchmark {
+
+  private static final int SIZE = 2048;
+
+  @Param({"RUNS", "CONTOUR", "SCANLINE"})
+  public TracingEngine engine;
+
+  private ValidMask mask;
+  private AffineTransform affine;
+  private ForkJoinPool pool;
+
+  @Setup
+  public void setUp() {
+    mask = new ValidMask(SIZE, SIZE);
+    affine = new AffineTransform(10, -10, 500000, 5000000);
+    pool = new ForkJoinPool(1);
+    Random random = new Random(42);
+    long[] rowBits = new long[RowBits.words(SIZE)];
+
+    for (int y = 0; y < SIZE; y++) {
+      RowBits.clear(rowBits, SIZE);
+      int edge = SIZE / 4 + y / 2 + random.nextInt(16);
+
+      for (int x = edge; x < SIZE; x++) {
+        if (random.nextInt(1000) != 0) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+
+      mask.setRow(y, rowBits);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    mask.close();
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Geometry vectorize() {
+    return Vectorization.vectorize(mask, affine, pool, engine);
+  }
+}
@@ -1,5 +1,6 @@
 package com.sinergise.sentinel.byoctool.cli;
 
+import java.nio.file.Path;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
@@ -17,17 +18,63 @@ public class CoverageTracingConfig {
       defaultValue = "0")
   private int imageIndex;
 
+  @Option(
+      names = {"--trace-max-pixels"},
+      description =
+          "Maximum number of pixels of the image traced in each file. Starting at the image at the set index (see --trace-image-idx), lower resolution overviews are taken until one has at most this many pixels, or the lowest resolution one if none has. Bounds tracing time of collections with images of very different sizes. If set to zero, there is no limit. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "0")
+  private long maxPixels;
+
+  @Option(
+      names = {"--trace-target-resolution"},
+      description =
+          "Resolution of coverage, in units of the coordinate reference system of the files. Starting at the image at the set index (see --trace-image-idx), the lowest resolution overview whose pixels are at most this large is traced in each file. Files with coarser images are traced at the set index. Can be combined with --trace-max-pixels, in which case the lower resolution image of both is traced. If set to zero, the image at the set index is traced. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "0")
+  private double targetResolution;
+
   @Option(
       names = {"--negative-buffer"},
       description =
-          "Sets the amount of negative buffer to apply to coverage geometries right before they are simplified, in pixels. Values should be positive or zero. The pixel size is represented by the lowest resolution band at the set image index (see --trace-image-idx). If set to zero, the coverage may be simplified in such way that it includes no-data pixels outside the boundaries, however zero will also prevent gaps between touching but not intersecting tiles in a collection. The default is ${DEFAULT-VALUE}. To use, make sure --trace-coverage is set. Also see --distance-tolerance.",
+          "Sets the amount of negative buffer to apply to coverage geometries right before they are simplified, in pixels. Values should be positive or zero. The pixel size is represented by the lowest resolution band at the traced image index (see --trace-image-idx, --trace-max-pixels and --trace-target-resolution). If set to zero, the coverage may be simplified in such way that it includes no-data pixels outside the boundaries, however zero will also prevent gaps between touching but not intersecting tiles in a collection. The default is ${DEFAULT-VALUE}. To use, make sure --trace-coverage is set. Also see --distance-tolerance.",
       defaultValue = "10")
   private double negativeBufferInPixels;
 
   @Option(
       names = {"--distance-tolerance"},
       description =
-          "Sets the distance tolerance in pixels for coverage simplification using the Ramer–Douglas–Peucker algorithm. The pixel size is represented by the lowest resolution band at the set image index (see --trace-image-idx). Traced geometries with more than 100 points will be rejected, in which case the tile will not be processed further. Increasing the distance tolerance may help as it will reduce the number of points. The default is ${DEFAULT-VALUE}. To use, make sure --trace-coverage is set. Also see --negative-buffer.",
+          "Sets the distance tolerance in pixels for coverage simplification using the Ramer–Douglas–Peucker algorithm. The pixel size is represented by the lowest resolution band at the traced image index (see --trace-image-idx, --trace-max-pixels and --trace-target-resolution). Traced geometries with more than 100 points will be rejected, in which case the tile will not be processed further. Increasing the distance tolerance may help as it will reduce the number of points. The default is ${DEFAULT-VALUE}. To use, make sure --trace-coverage is set. Also see --negative-buffer.",
       defaultValue = "10")
   private double distanceToleranceInPixels;
+
+  @Option(
+      names = {"--trace-pyramidal"},
+      description =
+          "Traces the lowest resolution overview first and then decodes rows of tiles of the image at the set index (see --trace-image-idx) only where the overview has a boundary between valid and no-data pixels. Rows of tiles which are wholly valid or wholly no-data in the overview are not decoded. Boundaries are as exact as without this flag, but holes or islands smaller than an overview pixel may be missed inside of such tiles. Files without overviews are traced as usual.")
+  private boolean pyramidal;
+
+  @Option(
+      names = {"--trace-threads"},
+      description =
+          "Number of threads used to trace coverage. Masks of valid pixels are vectorized in strips of rows, which are merged in parallel. The pool is shared by all files traced concurrently. If set to zero, the common pool sized to the number of available processors is used. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "0")
+  private int tracingThreads;
+
+  @Option(
+      names = {"--trace-engine"},
+      description =
+          "Algorithm used to trace coverage. RUNS unions rectangles of horizontal runs of valid pixels strip by strip in parallel. CONTOUR follows the boundaries of valid pixels directly into polygons with holes, which is much faster for ragged edges. SCANLINE merges runs of valid pixels of consecutive rows into polygon boundaries in a single pass over the rows, without any unions. Valid values: ${COMPLETION-CANDIDATES}. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "RUNS")
+  private TracingEngine tracingEngine = TracingEngine.RUNS;
+
+  @Option(
+      names = {"--trace-mask-dir"},
+      description =
+          "Directory in which masks of valid pixels are kept in memory-mapped temporary files while tracing coverage, at one bit per pixel. Without it, masks are kept in native memory outside of the Java heap, or on the heap if Java was started without --enable-preview. Set it for images with more pixels than fit into memory, which requires --enable-preview. Files are deleted once tracing is done.")
+  private Path maskDirectory;
+
+  public enum TracingEngine {
+    RUNS,
+    CONTOUR,
+    SCANLINE
+  }
 }
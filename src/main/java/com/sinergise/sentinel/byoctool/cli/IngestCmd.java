@@ -4,8 +4,13 @@ import com.sinergise.sentinel.byoctool.ByocTool;
 import com.sinergise.sentinel.byoctool.ingestion.ByocIngestor;
 import com.sinergise.sentinel.byoctool.ingestion.ByocIngestor.BandMap;
 import com.sinergise.sentinel.byoctool.ingestion.ByocIngestor.Tile;
+import com.sinergise.sentinel.byoctool.ingestion.CogCache;
 import com.sinergise.sentinel.byoctool.ingestion.CogFactory;
+import com.sinergise.sentinel.byoctool.ingestion.Compression;
+import com.sinergise.sentinel.byoctool.ingestion.Gdal;
+import com.sinergise.sentinel.byoctool.ingestion.ProcessRunner;
 import com.sinergise.sentinel.byoctool.ingestion.ProcessUtil;
+import com.sinergise.sentinel.byoctool.ingestion.RunReport;
 import com.sinergise.sentinel.byoctool.ingestion.TileSearch;
 import com.sinergise.sentinel.byoctool.ingestion.TileSearch.FileMap;
 import com.sinergise.sentinel.byoctool.ingestion.storage.ObjectStorageClient;
@@ -19,11 +24,13 @@ import picocli.CommandLine.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 
 @Command(
@@ -69,12 +76,35 @@ public class IngestCmd implements Runnable {
   @Option(names = "--resampling", description = "Sets resampling algorithms for COG overviews. Available algorithms are listed here https://gdal.org/programs/gdal_translate.html#cmdoption-gdal_translate-r. If specified only once, it also applies to all bands. Otherwise, you need to repeat as many times as there are bands.", defaultValue = "average")
   String[] resampling;
 
+  @Option(names = "--compression", description = "Sets COG compression. Available values are DEFLATE, ZSTD, LZW, LERC and AUTO. ZSTD and DEFLATE accept a compression level and LERC accepts the maximum allowed error, for example ZSTD:9 or LERC:0.001. AUTO encodes a sample of the first tile with each codec and chooses the best one for the band according to --auto-compression-speed-weight. If specified only once, it also applies to all bands. Otherwise, you need to repeat as many times as there are bands. The default is ${DEFAULT-VALUE}.", defaultValue = "DEFLATE")
+  String[] compression;
+
+  @Option(
+      names = {"--auto-compression-speed-weight"},
+      description =
+          "Weight of encoding speed against compressed size, between 0 and 1, used when choosing compression with AUTO. At 0 the smallest output wins, at 1 the fastest encoding wins. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "0.25")
+  private double autoCompressionSpeedWeight;
+
   @Option(
       names = {"--processing-folder"},
       description =
           "Path to a folder which will be used for processing COGs. By default, files are saved next to input files.")
   private Path processingFolder;
 
+  @Option(
+      names = {"--cog-cache-folder"},
+      description =
+          "Path to a folder for caching generated COGs. COGs are cached by input file content and COG options, so repeated ingestions of the same files, also into other collections, skip GDAL processing. By default, COGs are not cached.")
+  private Path cogCacheFolder;
+
+  @Option(
+      names = {"--cog-cache-size"},
+      description =
+          "Maximum size of the COG cache in MB. When exceeded, least recently used COGs are removed from the cache. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "10240")
+  private long cogCacheSizeInMb;
+
   @Option(
       names = {"--no-data"},
       description =
@@ -105,6 +135,12 @@ public class IngestCmd implements Runnable {
             "Enables coverage tracing. See --distance-tolerance and --negative-buffer for tuning parameters. If not set the cover geometry will equal the image bounding box.",
         required = true)
     private boolean traceCoverage;
+
+    @Option(
+        names = {"--trace-gdal-mask"},
+        description =
+            "Has GDAL write a mask of valid pixels next to each COG while creating it, and traces coverage from the mask instead of decoding the COG once more. The mask is used only when the main image is traced (see --trace-image-idx, --trace-max-pixels and --trace-target-resolution), otherwise the COG is traced as usual, and so are COGs restored from the cache.")
+    private boolean gdalMask;
   }
 
   @Option(
@@ -122,6 +158,34 @@ public class IngestCmd implements Runnable {
       description = "Deletes generated COGs after they are processed and uploaded. Will leave them on disk if not set.")
   private boolean deleteGeneratedCogs;
 
+  @Option(
+      names = {"--gdal-in-process"},
+      description =
+          "Calls the GDAL library in-process instead of running GDAL command line utilities, which saves process startup for every GDAL step. Requires running Java with --enable-preview. If the library cannot be loaded, command line utilities are used.")
+  private boolean gdalInProcess;
+
+  @Option(
+      names = {"--gdal-library"},
+      description = "Name or path of the GDAL library used with --gdal-in-process, for example gdal, libgdal.so.34 or /usr/lib/libgdal.so. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "gdal")
+  private String gdalLibrary;
+
+  @Option(
+      names = {"--gdal-timeout"},
+      description = "Kills a GDAL command line utility if it runs longer than the given number of seconds. No limit if not set.")
+  private Integer gdalTimeout;
+
+  @Option(
+      names = {"--gdal-retries"},
+      description = "Number of times a GDAL command line utility is retried after it was killed because of --gdal-timeout. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "1")
+  private int gdalRetries;
+
+  @Option(
+      names = {"--report-file"},
+      description = "Path to a JSON file where the ingestion report is written, for example the chosen compressions.")
+  private Path reportFile;
+
   @ParentCommand private ByocTool parent;
 
   public void run() {
@@ -135,6 +199,7 @@ public class IngestCmd implements Runnable {
     }
     List<FileMap> fileMaps = FileMapsDeserialization.deserialize(serializedFileMaps);
     setResampling(fileMaps);
+    setCompression(fileMaps);
 
     Collection<Tile> tiles;
     try {
@@ -169,6 +234,7 @@ public class IngestCmd implements Runnable {
     ByocClient byocClient = parent.newByocClient(collectionInfo.getDeployment());
 
     ObjectStorageClient objectStorageClient = parent.newObjectStorageClient(collectionInfo);
+    RunReport runReport = new RunReport();
 
     if (multipartUpload && objectStorageClient instanceof S3StorageClient) {
       ((S3StorageClient) objectStorageClient).setMultipartUpload(multipartUpload);
@@ -177,7 +243,11 @@ public class IngestCmd implements Runnable {
     CogFactory cogFactory = new CogFactory()
         .setNoDataValue(noDataValue)
         .setUseCompressionPredictor(!noCompressionPredictor)
-        .setProcessingFolder(processingFolder);
+        .setProcessingFolder(processingFolder)
+        .setCogCache(newCogCache())
+        .setAutoCompressionSpeedWeight(autoCompressionSpeedWeight)
+        .setRunReport(runReport)
+        .setCreateMasks(tracingConfig != null && tracingConfig.gdalMask);
 
     ExecutorService executor = Executors.newFixedThreadPool(nThreads);
 
@@ -187,7 +257,16 @@ public class IngestCmd implements Runnable {
         .setTracingConfig(tracingConfig)
         .setDeleteGeneratedCogs(deleteGeneratedCogs);
 
-    String gdalVersion = ProcessUtil.runCommand("gdalinfo", "--version");
+    ProcessUtil.setRunner(new ProcessRunner()
+        .setTimeout(gdalTimeout != null ? Duration.ofSeconds(gdalTimeout) : null)
+        .setRetries(gdalRetries)
+        .setStatsListener(runReport::addProcessStats));
+
+    if (gdalInProcess) {
+      Gdal.useNativeBackend(gdalLibrary);
+    }
+
+    String gdalVersion = Gdal.backend().version();
     log.debug("GDAL version: {}", gdalVersion);
 
     try {
@@ -195,19 +274,54 @@ public class IngestCmd implements Runnable {
     } finally {
       executor.shutdown();
       objectStorageClient.close();
+      writeReport(runReport);
+    }
+  }
+
+  private void writeReport(RunReport runReport) {
+    runReport.log();
+
+    if (reportFile != null) {
+      try {
+        runReport.write(reportFile);
+      } catch (IOException e) {
+        log.error("Failed to write report to {}", reportFile, e);
+      }
+    }
+  }
+
+  private CogCache newCogCache() {
+    if (cogCacheFolder == null) {
+      return null;
+    }
+
+    try {
+      return new CogCache(cogCacheFolder, cogCacheSizeInMb * 1024 * 1024);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to create COG cache.", e);
     }
   }
 
   void setResampling(List<FileMap> fileMaps) {
+    setPerBand(fileMaps, resampling, "--resampling", BandMap::setResampling);
+  }
+
+  void setCompression(List<FileMap> fileMaps) {
+    setPerBand(fileMaps, compression, "--compression",
+        (bandMap, value) -> bandMap.setCompression(Compression.parse(value)));
+  }
+
+  private static void setPerBand(List<FileMap> fileMaps, String[] values, String optionName,
+      BiConsumer<BandMap, String> setter) {
     int bandCount = 0;
     boolean notEnoughValues = false;
 
     for (FileMap fileMap : fileMaps) {
       for (BandMap bandMap : fileMap.bands()) {
-        if (resampling.length == 1) {
-          bandMap.setResampling(resampling[bandCount]);
-        } else if (bandCount < resampling.length) {
-          bandMap.setResampling(resampling[bandCount++]);
+        if (values.length == 1) {
+          setter.accept(bandMap, values[bandCount]);
+        } else if (bandCount < values.length) {
+          setter.accept(bandMap, values[bandCount++]);
         } else {
           notEnoughValues = true;
           break;
@@ -215,8 +329,8 @@ public class IngestCmd implements Runnable {
       }
     }
 
-    if (notEnoughValues || (resampling.length != 1 && bandCount < resampling.length)) {
-      throw new IllegalArgumentException("--resampling is not configured properly!");
+    if (notEnoughValues || (values.length != 1 && bandCount < values.length)) {
+      throw new IllegalArgumentException(optionName + " is not configured properly!");
     }
   }
 
@@ -2,6 +2,7 @@ package com.sinergise.sentinel.byoctool.cli;
 
 import com.sinergise.sentinel.byoctool.ByocTool;
 import com.sinergise.sentinel.byoctool.coverage.CoverageCalculator;
+import com.sinergise.sentinel.byoctool.ingestion.CoverageUpdater;
 import com.sinergise.sentinel.byoctool.ingestion.storage.ObjectStorageClient;
 import com.sinergise.sentinel.byoctool.sentinelhub.ByocClient;
 import com.sinergise.sentinel.byoctool.sentinelhub.models.ByocCollection;
@@ -14,6 +15,7 @@ import picocli.CommandLine.*;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 @Command(name = "set-coverage", description = "Set tile coverage.")
@@ -23,7 +25,10 @@ public class SetCoverageCmd implements Runnable {
   @Parameters(index = "0", description = "Collection id")
   private String collectionId;
 
-  @Parameters(index = "1", description = "Tile id")
+  @Parameters(
+      index = "1",
+      arity = "0..1",
+      description = "Tile id. If omitted, coverage of all tiles of the collection is set.")
   private String tileId;
 
   @Option(
@@ -32,6 +37,26 @@ public class SetCoverageCmd implements Runnable {
           "Optionally set the path to a local file corresponding to the input tile which will be used for coverage tracing. If omitted, the file will be accessed via S3.")
   private String file;
 
+  @Option(
+      names = {"--num-threads"},
+      description =
+          "Number of tiles traced at once when setting coverage of all tiles. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "2")
+  private int nThreads;
+
+  @Option(
+      names = {"--checkpoint-interval"},
+      description =
+          "Number of traced tiles after which they are updated, one by one, and saved to the checkpoint file when setting coverage of all tiles. The default is ${DEFAULT-VALUE}.",
+      defaultValue = "100")
+  private int checkpointInterval;
+
+  @Option(
+      names = {"--checkpoint"},
+      description =
+          "File in which versions (ETags or generations) of objects of updated tiles are saved when setting coverage of all tiles. Tiles whose objects have not changed since are skipped, so an interrupted run can be continued by running it again with the same file.")
+  private Path checkpointFile;
+
   @Mixin private CoverageTracingConfig coverageTracingConfig;
 
   @Option(
@@ -46,26 +71,45 @@ public class SetCoverageCmd implements Runnable {
     ByocCollectionInfo collectionInfo = parent.getCollectionInfo(collectionId);
     ByocClient byocClient = parent.newByocClient(collectionInfo.getDeployment());
 
+    if (tileId == null) {
+      if (file != null) {
+        throw new IllegalArgumentException("A file can only be given with a tile id.");
+      }
+
+      new CoverageUpdater(byocClient, parent.newObjectStorageClient(collectionInfo))
+          .setTracingConfig(coverageTracingConfig)
+          .setThreads(nThreads)
+          .setCheckpointInterval(checkpointInterval)
+          .setCheckpointFile(checkpointFile)
+          .setDryRun(dryRun)
+          .setCoverageListener(dryRun
+              ? (tile, coverage) -> System.out.println(tile.getId() + "\t" + coverage)
+              : null)
+          .update(collectionId);
+      return;
+    }
+
     ByocCollection collection = byocClient.getCollection(collectionId)
         .orElseThrow(() -> new RuntimeException("Collection not found."));
 
     ByocTile tile = byocClient.getTile(collectionId, tileId)
         .orElseThrow((() -> new RuntimeException("Tile not found.")));
 
-    CoverageCalculator coverageCalculator = new CoverageCalculator(coverageTracingConfig);
     ObjectStorageClient objectStorageClient = parent.newObjectStorageClient(collectionInfo);
+    Geometry coverage;
 
-    try {
+    try (CoverageCalculator coverageCalculator = new CoverageCalculator(coverageTracingConfig)) {
       if (file != null) {
         coverageCalculator.addImage(Paths.get(file));
       } else {
         processTileBands(collection, tile, objectStorageClient, coverageCalculator);
       }
+
+      coverage = coverageCalculator.getCoverage();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
 
-    Geometry coverage = coverageCalculator.getCoverage();
     System.out.println(coverage);
     System.out.println("CRS: " + coverage.getSRID());
 
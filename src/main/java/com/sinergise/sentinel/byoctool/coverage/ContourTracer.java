@@ -0,0 +1,161 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.coverage.Vectorization.AffineTransform;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Traces the boundaries between valid and invalid pixels of a mask along pixel edges, producing
+ * polygons with holes without any overlay operations.
+ *
+ * <p>Boundaries are followed with valid pixels on the right. Where two valid pixels touch only
+ * diagonally, the boundary turns around each of them, so such pixels belong to separate polygons
+ * unless they are connected through other pixels. In that case the ring passes the corner twice
+ * and is split there into a shell and a hole touching it at the corner, which is valid in JTS.
+ * Shells and holes are told apart by orientation, see {@link PixelRing#toGeometry}.
+ */
+class ContourTracer {
+
+  private static final int EAST = 0;
+  private static final int SOUTH = 1;
+  private static final int WEST = 2;
+  private static final int NORTH = 3;
+
+  private static final int[] DX = {1, 0, -1, 0};
+  private static final int[] DY = {0, 1, 0, -1};
+
+  private final ValidMask mask;
+  private final ValidMask visitedEastEdges;
+  private final List<PixelRing> rings = new ArrayList<>();
+
+  private ContourTracer(ValidMask mask) {
+    this.mask = mask;
+    this.visitedEastEdges = mask.allocateAlike(mask.width(), mask.height() + 1);
+  }
+
+  /** Returns polygons of valid pixels of the mask, or null if there are none. */
+  static Geometry trace(ValidMask mask, AffineTransform affine) {
+    ContourTracer tracer = new ContourTracer(mask);
+
+    try (tracer.visitedEastEdges) {
+      tracer.traceRings();
+    }
+
+    return PixelRing.toGeometry(tracer.rings, affine);
+  }
+
+  private void traceRings() {
+    for (int y = 0; y < mask.height(); y++) {
+      for (int x = 0; x < mask.width(); x++) {
+        // every ring has an edge with a valid pixel below and an invalid one above it
+        if (mask.get(x, y) && !mask.get(x, y - 1) && !isVisited(x, y)) {
+          traceRing(x, y);
+        }
+      }
+    }
+  }
+
+  private void traceRing(int startX, int startY) {
+    PixelRing ring = new PixelRing();
+    Map<Long, Integer> saddles = new HashMap<>();
+    int x = startX;
+    int y = startY;
+    int direction = EAST;
+    ring.add(x, y);
+    if (isSaddle(x, y)) {
+      saddles.put(key(x, y), 0);
+    }
+
+    while (true) {
+      if (direction == EAST) {
+        markVisited(x, y);
+      }
+      x += DX[direction];
+      y += DY[direction];
+
+      int next = nextDirection(x, y, direction);
+
+      if (x == startX && y == startY && next == EAST) {
+        ring.add(x, y);
+        break;
+      }
+
+      if (next != direction) {
+        if (isSaddle(x, y)) {
+          Integer previous = saddles.get(key(x, y));
+
+          if (previous != null) {
+            // the boundary pinches at this corner, close the loop since the previous visit
+            rings.add(ring.splitFrom(previous, x, y));
+            saddles.values().removeIf(index -> index > previous);
+          } else {
+            saddles.put(key(x, y), ring.size());
+            ring.add(x, y);
+          }
+        } else {
+          ring.add(x, y);
+        }
+      }
+
+      direction = next;
+    }
+
+    rings.add(ring);
+  }
+
+  /** Returns the direction leaving the corner which keeps valid pixels on the right. */
+  private int nextDirection(int x, int y, int direction) {
+    boolean frontRight;
+    boolean frontLeft;
+
+    switch (direction) {
+      case EAST:
+        frontLeft = mask.get(x, y - 1);
+        frontRight = mask.get(x, y);
+        break;
+      case SOUTH:
+        frontLeft = mask.get(x, y);
+        frontRight = mask.get(x - 1, y);
+        break;
+      case WEST:
+        frontLeft = mask.get(x - 1, y);
+        frontRight = mask.get(x - 1, y - 1);
+        break;
+      default:
+        frontLeft = mask.get(x - 1, y - 1);
+        frontRight = mask.get(x, y - 1);
+    }
+
+    if (!frontRight) {
+      return (direction + 1) & 3;
+    }
+    if (!frontLeft) {
+      return direction;
+    }
+    return (direction + 3) & 3;
+  }
+
+  private boolean isSaddle(int x, int y) {
+    boolean topLeft = mask.get(x - 1, y - 1);
+    boolean topRight = mask.get(x, y - 1);
+    boolean bottomLeft = mask.get(x - 1, y);
+    boolean bottomRight = mask.get(x, y);
+
+    return topLeft == bottomRight && topRight == bottomLeft && topLeft != topRight;
+  }
+
+  private boolean isVisited(int x, int y) {
+    return visitedEastEdges.get(x, y);
+  }
+
+  private void markVisited(int x, int y) {
+    visitedEastEdges.set(x, y);
+  }
+
+  private static long key(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
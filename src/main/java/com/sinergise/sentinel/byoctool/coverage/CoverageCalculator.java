@@ -1,89 +1,232 @@
 package com.sinergise.sentinel.byoctool.coverage;
 
 import com.sinergise.sentinel.byoctool.cli.CoverageTracingConfig;
-import com.sinergise.sentinel.byoctool.tiff.TiffCompoundDirectory;
 import com.sinergise.sentinel.byoctool.tiff.TiffDirectory.Scale;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata.Image;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadataRegistry;
 import com.twelvemonkeys.imageio.plugins.tiff.TIFFImageReader;
 import com.twelvemonkeys.imageio.plugins.tiff.TIFFImageReaderSpi;
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.experimental.Accessors;
+import lombok.extern.log4j.Log4j2;
 import org.locationtech.jts.geom.*;
-import org.locationtech.jts.operation.buffer.BufferOp;
-import org.locationtech.jts.operation.buffer.BufferParameters;
 import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
 
 import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.RecursiveTask;
 
+/**
+ * Traces the coverage of a tile as the intersection of the valid pixels of its bands. Bands may be
+ * added from several threads at once, tracing runs concurrently and only combining a band with
+ * the bands added before is serialized. See {@link #addImages(List, List)} for tracing all bands
+ * of a tile in parallel.
+ */
+@Log4j2
 @RequiredArgsConstructor
-public class CoverageCalculator {
+public class CoverageCalculator implements AutoCloseable {
 
   private final CoverageTracingConfig config;
 
-  private Geometry coveragesIntersection;
-  private Envelope tileEnvelope;
-  private Integer epsgCode;
-  private Double lowestResolution;
+  /** Intersection of the bands added so far, null if none were. */
+  private BandCoverage combined;
 
-  private static final BufferParameters BUFFER_PARAMETERS =
-      new BufferParameters(1, BufferParameters.CAP_SQUARE, BufferParameters.JOIN_MITRE, 10);
+  /** Relative difference up to which resolutions of overviews are taken as equal. */
+  private static final double RESOLUTION_TOLERANCE = 1e-6;
 
   public void addImage(Path path) throws IOException {
-    addImage(path.toFile());
+    add(read(path));
   }
 
   public void addImage(Object input) throws IOException {
     try (ImageInputStream iis = ImageIO.createImageInputStream(input)) {
-      iis.mark();
-      TiffCompoundDirectory compoundDirectory = new TiffCompoundDirectory(iis);
-      iis.reset();
-
-      TIFFImageReader imageReader =
-          (TIFFImageReader) new TIFFImageReaderSpi().createReaderInstance();
-      imageReader.setInput(iis);
-
-      int imageIndex =
-          config.getImageIndex() < compoundDirectory.directoryCount()
-              ? config.getImageIndex()
-              : compoundDirectory.directoryCount() - 1;
-      Geometry geometry = Vectorization.vectorize(imageReader.read(imageIndex), compoundDirectory);
-
-      double resolution = calculateResolution(compoundDirectory, imageIndex);
-      if (lowestResolution == null || resolution > lowestResolution) {
-        lowestResolution = resolution;
+      TiffMetadata metadata = TiffMetadata.read(iis);
+      iis.seek(0);
+
+      add(read(iis, metadata));
+    }
+  }
+
+  /**
+   * Adds the image with valid pixels read from the mask GDAL wrote next to it, as with
+   * {@code gdal_translate -mask}, where nonzero pixels are valid. The mask has no overviews, so
+   * the image itself is traced if an overview of it is to be traced, or if the mask does not
+   * match it.
+   */
+  public void addImage(Path path, Path maskPath) throws IOException {
+    add(read(path, maskPath));
+  }
+
+  /**
+   * Adds the images at once, each with the mask GDAL wrote next to it unless the mask path at the
+   * same index is null (see {@link #addImage(Path, Path)}). Images are traced in parallel on the
+   * tracing pool and combined pairwise as neighbouring ones complete, in a tree of intersections.
+   */
+  public void addImages(List<Path> paths, List<Path> maskPaths) throws IOException {
+    if (paths.size() != maskPaths.size()) {
+      throw new IllegalArgumentException(String.format(
+          "Got %d masks for %d images.", maskPaths.size(), paths.size()));
+    }
+
+    if (paths.isEmpty()) {
+      return;
+    }
+
+    try {
+      add(Vectorization.pool(config.getTracingThreads())
+          .invoke(new IntersectionTask(paths, maskPaths, 0, paths.size())));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  public void addImages(List<Path> paths) throws IOException {
+    addImages(paths, Collections.nCopies(paths.size(), null));
+  }
+
+  private BandCoverage read(Path path) throws IOException {
+    TiffMetadata metadata = TiffMetadataRegistry.get(path);
+
+    try (ImageInputStream iis = ImageIO.createImageInputStream(path.toFile())) {
+      return read(iis, metadata);
+    }
+  }
+
+  private BandCoverage read(Path path, Path maskPath) throws IOException {
+    if (maskPath == null) {
+      return read(path);
+    }
+
+    TiffMetadata metadata = TiffMetadataRegistry.get(path);
+    int imageIndex = imageIndex(metadata);
+
+    if (imageIndex == 0) {
+      try (ImageInputStream iis = ImageIO.createImageInputStream(maskPath.toFile())) {
+        TiffMetadata maskMetadata = TiffMetadata.read(iis);
+        iis.seek(0);
+        Image image = metadata.images().get(0);
+        Image maskImage = maskMetadata.images().get(0);
+
+        if (maskImage.width() == image.width() && maskImage.height() == image.height()) {
+          ValidMask mask = Vectorization.readMask(
+              newImageReader(iis), 0, maskMetadata, 0, false, config.getMaskDirectory());
+          return band(metadata, 0, mask);
+        }
+
+        log.warn("Mask {} of {}x{} pixels does not match image {} of {}x{} pixels.",
+            maskPath, maskImage.width(), maskImage.height(), path, image.width(), image.height());
       }
+    }
+
+    return read(path);
+  }
+
+  private BandCoverage read(ImageInputStream iis, TiffMetadata metadata) throws IOException {
+    int imageIndex = imageIndex(metadata);
+    ValidMask mask = Vectorization.readMask(
+        newImageReader(iis), imageIndex, metadata, config.isPyramidal(),
+        config.getMaskDirectory());
+
+    return band(metadata, imageIndex, mask);
+  }
+
+  private static TIFFImageReader newImageReader(ImageInputStream iis) throws IOException {
+    TIFFImageReader imageReader =
+        (TIFFImageReader) new TIFFImageReaderSpi().createReaderInstance();
+    imageReader.setInput(iis);
+    return imageReader;
+  }
 
-      if (coveragesIntersection == null) {
-        coveragesIntersection = geometry;
-        this.tileEnvelope = compoundDirectory.envelope();
-        this.epsgCode = compoundDirectory.epsgCode();
+  /** Returns the band with the given mask of valid pixels, a null mask has all pixels valid. */
+  private BandCoverage band(TiffMetadata metadata, int imageIndex, ValidMask mask) {
+    Grid grid = new Grid(
+        metadata.envelope(),
+        Math.toIntExact(metadata.images().get(imageIndex).width()),
+        Math.toIntExact(metadata.images().get(imageIndex).height()));
+
+    return new BandCoverage(grid, mask, null, calculateResolution(metadata, imageIndex),
+        metadata.envelope(), metadata.epsgCode());
+  }
+
+  private synchronized void add(BandCoverage band) {
+    combined = combined == null ? band : intersect(combined, band);
+  }
+
+  /**
+   * Intersects the bands, taking over their masks. Masks on the same grid are combined in raster
+   * space and vectorized once in {@link #getCoverage()}, masks on other grids are vectorized right
+   * away and intersected as geometries. The grid and coordinate reference system are those of the
+   * first band, the resolution is the lower one and the envelope covers both, so intersecting is
+   * associative.
+   */
+  private BandCoverage intersect(BandCoverage a, BandCoverage b) {
+    try {
+      double resolution = Math.max(a.resolution, b.resolution);
+      Envelope envelope = new Envelope(a.envelope);
+      envelope.expandToInclude(b.envelope);
+      ValidMask mask = a.mask;
+      Geometry geometry = intersection(a.geometry, b.geometry, resolution);
+
+      if (b.grid.equals(a.grid)) {
+        if (mask == null) {
+          mask = b.mask;
+        } else if (b.mask != null) {
+          mask.and(b.mask);
+          b.close();
+        }
       } else {
-        coveragesIntersection = collectPolygons(
-                coveragesIntersection.intersection(geometry),
-                new GeometryFactory(new PrecisionModel(), coveragesIntersection.getSRID()));
+        Geometry other;
+        try (b) {
+          other = vectorize(b.mask, b.grid);
+        }
+        geometry = intersection(geometry, other, resolution);
       }
+
+      return new BandCoverage(a.grid, mask, geometry, resolution, envelope, a.epsgCode);
+    } catch (RuntimeException e) {
+      a.close();
+      b.close();
+      throw e;
     }
   }
 
-  public Geometry getCoverage() {
+  /** Intersects the geometries, a null geometry covers everything. */
+  private static Geometry intersection(Geometry a, Geometry b, double resolution) {
+    if (a == null || b == null) {
+      return a == null ? b : a;
+    }
+
+    return collectPolygons(
+        CoverageOverlay.intersection(a, b, CoverageOverlay.precisionModel(resolution)),
+        new GeometryFactory(new PrecisionModel(), a.getSRID()));
+  }
+
+  public synchronized Geometry getCoverage() {
     Geometry coverage;
 
-    if (coveragesIntersection == null) {
+    if (combined == null) {
       coverage = new GeometryFactory().createPolygon();
     } else {
-      coverage = DouglasPeuckerSimplifier.simplify(coveragesIntersection, 0);
+      double lowestResolution = combined.resolution;
+      coverage = intersection(
+          vectorize(combined.mask, combined.grid), combined.geometry, lowestResolution);
+
+      coverage = DouglasPeuckerSimplifier.simplify(coverage, 0);
 
       if (config.getNegativeBufferInPixels() != 0) {
         double negativeBuffer = lowestResolution * config.getNegativeBufferInPixels();
 
-        Geometry tile = new GeometryFactory().toGeometry(tileEnvelope);
-        Geometry coverageInverse = tile.difference(coverage);
-        Geometry inverseBuf = BufferOp.bufferOp(coverageInverse, negativeBuffer, BUFFER_PARAMETERS);
-        inverseBuf = DouglasPeuckerSimplifier.simplify(inverseBuf, 0);
-        coverage = coverage.difference(inverseBuf);
+        coverage = CoverageOverlay.shrink(coverage, combined.envelope, negativeBuffer,
+            CoverageOverlay.precisionModel(lowestResolution));
       }
 
       if (config.getDistanceToleranceInPixels() != 0) {
@@ -91,13 +234,35 @@ public class CoverageCalculator {
 
         coverage = DouglasPeuckerSimplifier.simplify(coverage, distanceTolerance);
       }
-    }
 
-    coverage.setSRID(epsgCode);
+      coverage.setSRID(combined.epsgCode);
+    }
 
     return coverage;
   }
 
+  /** Releases the combined mask of valid pixels, the coverage cannot be computed after. */
+  @Override
+  public synchronized void close() {
+    if (combined != null) {
+      combined.close();
+      combined = null;
+    }
+  }
+
+  /** Vectorizes the mask, a null mask has every pixel of the grid valid. */
+  private Geometry vectorize(ValidMask mask, Grid grid) {
+    if (mask == null) {
+      return new GeometryFactory().toGeometry(grid.envelope());
+    }
+
+    return Vectorization.vectorize(
+        mask,
+        Vectorization.affineTransform(grid.envelope(), grid.width(), grid.height()),
+        Vectorization.pool(config.getTracingThreads()),
+        config.getTracingEngine());
+  }
+
   static Geometry collectPolygons(Geometry geometry, GeometryFactory geometryFactory) {
     List<Polygon> polys = new LinkedList<>();
     collectPolygons(geometry, polys);
@@ -121,17 +286,132 @@ public class CoverageCalculator {
     }
   }
 
-  private double calculateResolution(TiffCompoundDirectory compoundDirectory, int imageIndex) {
-    Scale scale = compoundDirectory.scale();
+  /**
+   * Returns the index of the image to trace. Starting at the configured index, overviews are
+   * taken while they are still at least as fine as the target resolution, or while the image has
+   * more pixels than allowed.
+   */
+  private int imageIndex(TiffMetadata metadata) {
+    int imageIndex = Math.min(config.getImageIndex(), metadata.directoryCount() - 1);
+    double targetResolution = config.getTargetResolution();
+    long maxPixels = config.getMaxPixels();
+
+    for (int i = imageIndex + 1; i < metadata.directoryCount(); i++) {
+      Image overview = metadata.images().get(i);
+      if (overview.mask() || overview.width() >= metadata.images().get(imageIndex).width()) {
+        continue;
+      }
+
+      boolean fineEnough = targetResolution > 0
+          && calculateResolution(metadata, i) <= targetResolution * (1 + RESOLUTION_TOLERANCE);
+      boolean tooLarge = maxPixels > 0 && pixels(metadata.images().get(imageIndex)) > maxPixels;
+
+      if (fineEnough || tooLarge) {
+        imageIndex = i;
+      }
+    }
+
+    log.debug("Tracing image {} of {}x{} pixels.", imageIndex,
+        metadata.images().get(imageIndex).width(), metadata.images().get(imageIndex).height());
+
+    return imageIndex;
+  }
+
+  private static long pixels(Image image) {
+    return image.width() * image.height();
+  }
+
+  private double calculateResolution(TiffMetadata metadata, int imageIndex) {
+    Scale scale = metadata.scale();
     double resolution = ((scale.x() + scale.y()) / 2);
 
     if (imageIndex == 0) {
       return resolution;
     }
 
-    int mainImageHeight = Math.toIntExact(compoundDirectory.directory(0).imageHeight());
-    int overviewHeight = Math.toIntExact(compoundDirectory.directory(imageIndex).imageHeight());
+    int mainImageHeight = Math.toIntExact(metadata.images().get(0).height());
+    int overviewHeight = Math.toIntExact(metadata.images().get(imageIndex).height());
 
-    return resolution * mainImageHeight / (float) overviewHeight;
+    return resolution * mainImageHeight / (double) overviewHeight;
+  }
+
+  @Value
+  @Accessors(fluent = true)
+  private static class Grid {
+
+    Envelope envelope;
+    int width;
+    int height;
+  }
+
+  /**
+   * Valid pixels of one or more bands, as a mask on the grid of the first band intersected with
+   * the geometry of bands on other grids. A null mask has all pixels valid and a null geometry
+   * covers everything. Owned by a single thread until it is combined.
+   */
+  @AllArgsConstructor
+  private static class BandCoverage implements AutoCloseable {
+
+    private final Grid grid;
+    private ValidMask mask;
+    private final Geometry geometry;
+    private final double resolution;
+    private final Envelope envelope;
+    private final Integer epsgCode;
+
+    @Override
+    public void close() {
+      if (mask != null) {
+        mask.close();
+        mask = null;
+      }
+    }
+  }
+
+  /** Traces the images in a range of indices and intersects them pairwise. */
+  @RequiredArgsConstructor
+  private class IntersectionTask extends RecursiveTask<BandCoverage> {
+
+    private final List<Path> paths;
+    private final List<Path> maskPaths;
+    private final int from;
+    private final int to;
+
+    @Override
+    protected BandCoverage compute() {
+      if (to - from == 1) {
+        try {
+          return read(paths.get(from), maskPaths.get(from));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      int middle = (from + to) >>> 1;
+      IntersectionTask upper = new IntersectionTask(paths, maskPaths, from, middle);
+      upper.fork();
+      BandCoverage lower;
+
+      try {
+        lower = new IntersectionTask(paths, maskPaths, middle, to).compute();
+      } catch (RuntimeException e) {
+        try {
+          upper.join().close();
+        } catch (RuntimeException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+        throw e;
+      }
+
+      BandCoverage upperCoverage;
+      try {
+        upperCoverage = upper.join();
+      } catch (RuntimeException e) {
+        lower.close();
+        throw e;
+      }
+
+      return intersect(upperCoverage, lower);
+    }
   }
 }
@@ -0,0 +1,65 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.operation.buffer.BufferOp;
+import org.locationtech.jts.operation.buffer.BufferParameters;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+
+/**
+ * Overlay and buffer operations on coverage geometries, snap-rounding all vertices to a grid of a
+ * thousandth of a pixel. Vertices of traced coverage lie on pixel corners, so they hardly move,
+ * while snap-rounding nodes nearly coincident edges of different grids robustly instead of failing
+ * with a topology exception as floating precision overlay does.
+ */
+final class CoverageOverlay {
+
+  static final int GRID_CELLS_PER_PIXEL = 1000;
+
+  private static final BufferParameters BUFFER_PARAMETERS =
+      new BufferParameters(1, BufferParameters.CAP_SQUARE, BufferParameters.JOIN_MITRE, 10);
+
+  private CoverageOverlay() {
+  }
+
+  /** Returns the precision model of overlays of coverage with pixels of the given size. */
+  static PrecisionModel precisionModel(double pixelSize) {
+    return new PrecisionModel(GRID_CELLS_PER_PIXEL / pixelSize);
+  }
+
+  static Geometry intersection(Geometry a, Geometry b, PrecisionModel precisionModel) {
+    return OverlayNG.overlay(a, b, OverlayNG.INTERSECTION, precisionModel);
+  }
+
+  /**
+   * Shrinks the coverage by the distance, except along the edges of the tile, by removing the
+   * buffered no-data area of the tile from it.
+   */
+  static Geometry shrink(
+      Geometry coverage, Envelope tileEnvelope, double distance, PrecisionModel precisionModel) {
+    Geometry tile = coverage.getFactory().toGeometry(tileEnvelope);
+    Geometry coverageInverse =
+        OverlayNG.overlay(tile, coverage, OverlayNG.DIFFERENCE, precisionModel);
+    Geometry inverseBuf = buffer(coverageInverse, distance, precisionModel);
+    inverseBuf = DouglasPeuckerSimplifier.simplify(inverseBuf, 0);
+
+    return OverlayNG.overlay(coverage, inverseBuf, OverlayNG.DIFFERENCE, precisionModel);
+  }
+
+  /**
+   * Buffers the geometry in the precision model, rounding its offset curves and their
+   * intersections to the grid, and snap-rounding them if that fails, instead of noding them in
+   * floating precision. Vertices of the geometry should already lie on the grid, as they do in
+   * results of the overlays.
+   */
+  static Geometry buffer(Geometry geometry, double distance, PrecisionModel precisionModel) {
+    // the buffer works in the precision model of the factory of its input
+    Geometry fixed = new GeometryFactory(precisionModel, geometry.getSRID())
+        .createGeometry(geometry);
+
+    return BufferOp.bufferOp(fixed, distance, BUFFER_PARAMETERS);
+  }
+}
@@ -0,0 +1,105 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata.Image;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Reads the mask of valid pixels of an image a row of tiles at a time, asking the guides whether
+ * each tile is wholly valid or wholly invalid. Rows of tiles whose validity is all known are
+ * filled in without decoding them.
+ */
+@Log4j2
+class GuidedMask {
+
+  private static final int DEFAULT_BLOCK_SIZE = 256;
+
+  static int blockWidth(Image image) {
+    return image.tileWidth() != null ? Math.toIntExact(image.tileWidth()) : DEFAULT_BLOCK_SIZE;
+  }
+
+  static int blockHeight(Image image) {
+    return image.tileHeight() != null ? Math.toIntExact(image.tileHeight()) : DEFAULT_BLOCK_SIZE;
+  }
+
+  static ValidMask read(
+      ImageReader reader, int imageIndex, Image image, double noDataValue, Path maskDirectory,
+      List<TileGuide> guides) throws IOException {
+    ValidMask mask = new ValidMask(
+        Math.toIntExact(image.width()), Math.toIntExact(image.height()), maskDirectory);
+
+    try {
+      decode(reader, imageIndex, image, noDataValue, guides, mask);
+    } catch (IOException | RuntimeException e) {
+      mask.close();
+      throw e;
+    }
+
+    return mask;
+  }
+
+  /** Marks valid pixels of rows of tiles of the image, decoding them only if needed. */
+  private static void decode(
+      ImageReader reader, int imageIndex, Image image, double noDataValue,
+      List<TileGuide> guides, ValidMask mask) throws IOException {
+    int width = mask.width();
+    int height = mask.height();
+    int blockWidth = blockWidth(image);
+    int blockHeight = blockHeight(image);
+    ImageReadParam param = reader.getDefaultReadParam();
+    long[] rowBits = new long[RowBits.words(width)];
+    Boolean[] validity = new Boolean[(width + blockWidth - 1) / blockWidth];
+    int decodedRows = 0;
+    int rows = 0;
+
+    for (int blockY = 0; blockY < height; blockY += blockHeight) {
+      int row = rows++;
+      int maxY = Math.min(blockY + blockHeight, height);
+      boolean uniform = true;
+
+      for (int column = 0; column < validity.length; column++) {
+        validity[column] = null;
+        for (int i = 0; i < guides.size() && validity[column] == null; i++) {
+          validity[column] = guides.get(i).uniformValidity(column, row);
+        }
+        uniform &= validity[column] != null;
+      }
+
+      if (uniform) {
+        for (int column = 0; column < validity.length; column++) {
+          if (validity[column]) {
+            int blockX = column * blockWidth;
+            for (int y = blockY; y < maxY; y++) {
+              mask.setRange(y, blockX, Math.min(blockX + blockWidth, width));
+            }
+          }
+        }
+        continue;
+      }
+
+      // regions narrower than the image fail to decode with the TIFF reader, so whole rows of
+      // tiles are decoded
+      param.setSourceRegion(new Rectangle(0, blockY, width, maxY - blockY));
+      Raster strip = reader.read(imageIndex, param).getRaster();
+      ValidPixelScanner scanner = ValidPixelScanner.of(strip, noDataValue);
+      decodedRows++;
+
+      for (int y = 0; y < strip.getHeight(); y++) {
+        scanner.scanRow(y, rowBits);
+        mask.setRow(blockY + y, rowBits);
+      }
+
+      for (TileGuide guide : guides) {
+        guide.decoded(mask, row);
+      }
+    }
+
+    log.debug("Decoded {} of {} rows of tiles of image {}.", decodedRows, rows, imageIndex);
+  }
+}
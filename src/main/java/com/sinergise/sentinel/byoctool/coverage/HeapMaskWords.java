@@ -0,0 +1,49 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import java.util.Arrays;
+
+/** Words in an array on the Java heap, which needs no preview API. */
+final class HeapMaskWords implements MaskWords {
+
+  private final long[] words;
+
+  HeapMaskWords(long size) {
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(String.format(
+          "Mask of %d words does not fit into an array, keep masks in files of a mask directory.",
+          size));
+    }
+
+    this.words = new long[(int) size];
+  }
+
+  @Override
+  public long get(long index) {
+    return words[(int) index];
+  }
+
+  @Override
+  public void set(long index, long value) {
+    words[(int) index] = value;
+  }
+
+  @Override
+  public void fill(long from, long to, long value) {
+    Arrays.fill(words, (int) from, (int) to, value);
+  }
+
+  @Override
+  public void copyFrom(long[] source, long index, int length) {
+    System.arraycopy(source, 0, words, (int) index, length);
+  }
+
+  @Override
+  public void copyTo(long index, long[] target, int length) {
+    System.arraycopy(words, (int) index, target, 0, length);
+  }
+
+  @Override
+  public void close() {
+    // garbage collected
+  }
+}
@@ -0,0 +1,22 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+/** Storage of the words of a {@link ValidMask}, zeroed when allocated. */
+interface MaskWords extends AutoCloseable {
+
+  long get(long index);
+
+  void set(long index, long value);
+
+  /** Sets the words from {@code from} inclusive to {@code to} exclusive to the value. */
+  void fill(long from, long to, long value);
+
+  /** Copies the first {@code length} longs of the array to the words starting at the index. */
+  void copyFrom(long[] source, long index, int length);
+
+  /** Copies {@code length} words starting at the index to the start of the array. */
+  void copyTo(long index, long[] target, int length);
+
+  /** Releases the storage, the words must not be used after. */
+  @Override
+  void close();
+}
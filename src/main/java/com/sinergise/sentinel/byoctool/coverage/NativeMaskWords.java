@@ -0,0 +1,107 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Words off the heap, in native memory or in a memory-mapped temporary file, so masks may have
+ * more than 2^37 pixels and cost no garbage collection. Uses the foreign memory API, which is a
+ * preview API in Java 21, so loading this class fails with an {@link UnsupportedClassVersionError}
+ * unless Java was started with {@code --enable-preview}.
+ */
+final class NativeMaskWords implements MaskWords {
+
+  private final Path file;
+  private final Arena arena;
+  private final MemorySegment words;
+
+  private NativeMaskWords(long size, Path directory) {
+    this.arena = Arena.ofShared();
+    long bytes = Math.multiplyExact(size, Long.BYTES);
+
+    try {
+      if (directory == null) {
+        this.file = null;
+        this.words = arena.allocate(bytes, Long.BYTES);
+      } else {
+        this.file = Files.createTempFile(directory, "mask-", ".bin");
+        this.words = map(file, bytes, arena);
+      }
+    } catch (IOException e) {
+      arena.close();
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Allocates words in native memory. */
+  static MaskWords allocate(long size) {
+    return new NativeMaskWords(size, null);
+  }
+
+  /** Allocates words in a temporary file in the directory, deleted once the words are closed. */
+  static MaskWords map(long size, Path directory) {
+    return new NativeMaskWords(size, directory);
+  }
+
+  private static MemorySegment map(Path file, long size, Arena arena) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // the file grows to the size of the mapping, filled with zeros
+      return channel.map(MapMode.READ_WRITE, 0, size, arena);
+    }
+  }
+
+  @Override
+  public long get(long index) {
+    return words.getAtIndex(JAVA_LONG, index);
+  }
+
+  @Override
+  public void set(long index, long value) {
+    words.setAtIndex(JAVA_LONG, index, value);
+  }
+
+  @Override
+  public void fill(long from, long to, long value) {
+    if (value == 0 || value == -1) {
+      words.asSlice(from * Long.BYTES, (to - from) * Long.BYTES).fill((byte) value);
+      return;
+    }
+
+    for (long i = from; i < to; i++) {
+      set(i, value);
+    }
+  }
+
+  @Override
+  public void copyFrom(long[] source, long index, int length) {
+    MemorySegment.copy(source, 0, words, JAVA_LONG, index * Long.BYTES, length);
+  }
+
+  @Override
+  public void copyTo(long index, long[] target, int length) {
+    MemorySegment.copy(words, JAVA_LONG, index * Long.BYTES, target, 0, length);
+  }
+
+  @Override
+  public void close() {
+    arena.close();
+
+    if (file != null) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
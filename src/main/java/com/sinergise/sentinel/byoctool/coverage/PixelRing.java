@@ -0,0 +1,169 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.coverage.Vectorization.AffineTransform;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.locationtech.jts.algorithm.RayCrossingCounter;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.index.strtree.STRtree;
+
+/**
+ * Closed ring of pixel corners with valid pixels on its right, only corners where the boundary
+ * turns are kept. Corners are in pixel coordinates with y pointing down.
+ */
+final class PixelRing {
+
+  private int[] xs = new int[16];
+  private int[] ys = new int[16];
+  private int size;
+  private Double signedArea;
+  private Coordinate[] pixelCoordinates;
+
+  int size() {
+    return size;
+  }
+
+  void add(int x, int y) {
+    if (size == xs.length) {
+      xs = Arrays.copyOf(xs, size * 2);
+      ys = Arrays.copyOf(ys, size * 2);
+    }
+
+    xs[size] = x;
+    ys[size] = y;
+    size++;
+  }
+
+  /** Removes corners after the given index and returns them as a ring closed at the corner. */
+  PixelRing splitFrom(int index, int x, int y) {
+    PixelRing loop = new PixelRing();
+    for (int i = index; i < size; i++) {
+      loop.add(xs[i], ys[i]);
+    }
+    loop.add(x, y);
+
+    size = index + 1;
+    return loop;
+  }
+
+  double signedArea() {
+    if (signedArea == null) {
+      long area = 0;
+      for (int i = 0; i < size - 1; i++) {
+        area += (long) xs[i] * ys[i + 1] - (long) xs[i + 1] * ys[i];
+      }
+      signedArea = area / 2.0;
+    }
+
+    return signedArea;
+  }
+
+  Envelope envelope() {
+    Envelope envelope = new Envelope();
+    for (int i = 0; i < size; i++) {
+      envelope.expandToInclude(xs[i], ys[i]);
+    }
+    return envelope;
+  }
+
+  /** Returns the center of the valid pixel right of the first edge of the ring. */
+  Coordinate validPixelCenter() {
+    int dx = Integer.signum(xs[1] - xs[0]);
+    int dy = Integer.signum(ys[1] - ys[0]);
+
+    return new Coordinate(xs[0] + 0.5 * dx - 0.5 * dy, ys[0] + 0.5 * dy + 0.5 * dx);
+  }
+
+  /** Returns whether a point which is not on any pixel edge is inside of the ring. */
+  boolean contains(Coordinate point) {
+    if (pixelCoordinates == null) {
+      pixelCoordinates = new Coordinate[size];
+      for (int i = 0; i < size; i++) {
+        pixelCoordinates[i] = new Coordinate(xs[i], ys[i]);
+      }
+    }
+
+    return RayCrossingCounter.locatePointInRing(point, pixelCoordinates) == Location.INTERIOR;
+  }
+
+  LinearRing toLinearRing(GeometryFactory geometryFactory, AffineTransform affine) {
+    Coordinate[] coordinates = new Coordinate[size];
+    for (int i = 0; i < size; i++) {
+      coordinates[i] = new Coordinate(
+          affine.getTranslateX() + xs[i] * affine.getScaleX(),
+          affine.getTranslateY() + ys[i] * affine.getScaleY());
+    }
+
+    return geometryFactory.createLinearRing(coordinates);
+  }
+
+  /**
+   * Builds polygons of the rings, or returns null if there are no shells. Shells and holes are
+   * told apart by orientation, each hole belongs to the smallest shell containing it.
+   */
+  static Geometry toGeometry(List<PixelRing> rings, AffineTransform affine) {
+    GeometryFactory geometryFactory = new GeometryFactory();
+    List<PixelRing> shells = new ArrayList<>();
+    List<PixelRing> holes = new ArrayList<>();
+
+    for (PixelRing ring : rings) {
+      // shells run clockwise on screen, which is a positive area with y pointing down
+      if (ring.signedArea() > 0) {
+        shells.add(ring);
+      } else {
+        holes.add(ring);
+      }
+    }
+
+    if (shells.isEmpty()) {
+      return null;
+    }
+
+    List<List<PixelRing>> shellHoles = new ArrayList<>();
+    STRtree index = new STRtree();
+    for (int i = 0; i < shells.size(); i++) {
+      shellHoles.add(new ArrayList<>());
+      index.insert(shells.get(i).envelope(), i);
+    }
+
+    for (PixelRing hole : holes) {
+      Coordinate inside = hole.validPixelCenter();
+      int shell = -1;
+
+      for (Object candidate : index.query(new Envelope(inside))) {
+        int i = (Integer) candidate;
+        if (shells.get(i).contains(inside)
+            && (shell < 0 || shells.get(i).signedArea() < shells.get(shell).signedArea())) {
+          shell = i;
+        }
+      }
+
+      // cannot happen for a closed mask, keep the outer boundary rather than failing
+      if (shell >= 0) {
+        shellHoles.get(shell).add(hole);
+      }
+    }
+
+    Polygon[] polygons = new Polygon[shells.size()];
+    for (int i = 0; i < shells.size(); i++) {
+      LinearRing[] holeRings = shellHoles.get(i).stream()
+          .map(hole -> hole.toLinearRing(geometryFactory, affine))
+          .toArray(LinearRing[]::new);
+      polygons[i] = geometryFactory.createPolygon(
+          shells.get(i).toLinearRing(geometryFactory, affine), holeRings);
+    }
+
+    if (polygons.length == 1) {
+      return polygons[0];
+    }
+
+    return geometryFactory.createMultiPolygon(polygons);
+  }
+}
@@ -0,0 +1,95 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata.Image;
+import java.io.IOException;
+import java.util.List;
+import javax.imageio.ImageReader;
+
+/**
+ * Guides reading the mask of valid pixels of an image by its lowest resolution overview. The
+ * overview is traced first, and a tile of the image is only decoded if the overview has both
+ * valid and invalid pixels around it. Other tiles are taken as wholly valid or wholly invalid.
+ *
+ * <p>Boundaries are as exact as at full resolution, but holes or islands smaller than an
+ * overview pixel inside of otherwise uniform tiles are not seen.
+ */
+class PyramidalMask implements TileGuide {
+
+  private final ValidMask overview;
+  private final int width;
+  private final int height;
+  private final int blockWidth;
+  private final int blockHeight;
+
+  private PyramidalMask(ValidMask overview, int width, int height, int blockWidth,
+      int blockHeight) {
+    this.overview = overview;
+    this.width = width;
+    this.height = height;
+    this.blockWidth = blockWidth;
+    this.blockHeight = blockHeight;
+  }
+
+  /**
+   * Returns the index of the lowest resolution overview of the image at the given index, or -1
+   * if there is no overview smaller than the image.
+   */
+  static int coarsestOverview(TiffMetadata metadata, int imageIndex) {
+    List<Image> images = metadata.images();
+    int coarsest = -1;
+    long coarsestWidth = images.get(imageIndex).width();
+
+    for (int i = imageIndex + 1; i < images.size(); i++) {
+      Image image = images.get(i);
+      if (!image.mask() && image.width() < coarsestWidth) {
+        coarsest = i;
+        coarsestWidth = image.width();
+      }
+    }
+
+    return coarsest;
+  }
+
+  /** Traces the overview at the given index of the image at the given index. */
+  static PyramidalMask read(
+      ImageReader reader, int imageIndex, int overviewIndex, TiffMetadata metadata,
+      double noDataValue) throws IOException {
+    Image image = metadata.images().get(imageIndex);
+    // the overview is small enough for native memory
+    ValidMask overview = ValidMask.read(
+        reader, overviewIndex, Vectorization.stripHeight(metadata, overviewIndex), noDataValue,
+        null);
+
+    return new PyramidalMask(overview, Math.toIntExact(image.width()),
+        Math.toIntExact(image.height()), GuidedMask.blockWidth(image),
+        GuidedMask.blockHeight(image));
+  }
+
+  /**
+   * Returns whether all overview pixels covering the block, widened by one overview pixel, are
+   * valid or invalid, or null if they are mixed.
+   */
+  @Override
+  public Boolean uniformValidity(int column, int row) {
+    int minX = column * blockWidth;
+    int minY = row * blockHeight;
+    int maxX = Math.min(minX + blockWidth, width);
+    int maxY = Math.min(minY + blockHeight, height);
+    int overviewMinX =
+        Math.max(0, (int) Math.floor(minX * (double) overview.width() / width) - 1);
+    int overviewMinY =
+        Math.max(0, (int) Math.floor(minY * (double) overview.height() / height) - 1);
+    int overviewMaxX = Math.min(
+        overview.width(), (int) Math.ceil(maxX * (double) overview.width() / width) + 1);
+    int overviewMaxY = Math.min(
+        overview.height(), (int) Math.ceil(maxY * (double) overview.height() / height) + 1);
+
+    return overview.uniformValidity(overviewMinX, overviewMinY, overviewMaxX, overviewMaxY);
+  }
+
+  @Override
+  public void close() {
+    overview.close();
+  }
+}
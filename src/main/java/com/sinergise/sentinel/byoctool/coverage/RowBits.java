@@ -0,0 +1,96 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import java.util.Arrays;
+
+/**
+ * Helpers for rows of pixel flags packed into longs, pixel x being bit {@code x % 64} of word
+ * {@code x / 64}.
+ */
+class RowBits {
+
+  interface RunConsumer {
+
+    /** Accepts a run of set bits from {@code start} inclusive to {@code end} exclusive. */
+    void accept(int start, int end);
+  }
+
+  static int words(int width) {
+    return (width + 63) >>> 6;
+  }
+
+  static void clear(long[] bits, int width) {
+    Arrays.fill(bits, 0, words(width), 0L);
+  }
+
+  static void setAll(long[] bits, int width) {
+    int fullWords = width >>> 6;
+    Arrays.fill(bits, 0, fullWords, -1L);
+
+    if ((width & 63) != 0) {
+      bits[fullWords] = (1L << width) - 1;
+    }
+  }
+
+  /**
+   * Calls the consumer for every run of set bits among the first {@code width} bits. Bits past
+   * the width must be clear.
+   */
+  static void forEachRun(long[] bits, int width, RunConsumer consumer) {
+    int runStart = -1;
+
+    for (int i = 0, wordCount = words(width); i < wordCount; i++) {
+      long word = bits[i];
+      long remaining = -1L;
+
+      while (true) {
+        // inside a run look for the next clear bit, outside of it for the next set bit
+        long candidates = (runStart < 0 ? word : ~word) & remaining;
+        if (candidates == 0) {
+          break;
+        }
+
+        int bit = Long.numberOfTrailingZeros(candidates);
+        if (runStart < 0) {
+          runStart = (i << 6) + bit;
+        } else {
+          consumer.accept(runStart, (i << 6) + bit);
+          runStart = -1;
+        }
+        remaining = -1L << bit;
+      }
+    }
+
+    if (runStart >= 0) {
+      consumer.accept(runStart, width);
+    }
+  }
+
+  /**
+   * Stores the positions where runs of set bits start or end into the array, which must hold
+   * {@code width + 1} positions, and returns their number. Starts are at even indices, ends at odd
+   * ones. Bits past the width must be clear.
+   */
+  static int boundaries(long[] bits, int width, int[] boundaries) {
+    int count = 0;
+    long carry = 0;
+    int wordCount = words(width);
+
+    for (int i = 0; i < wordCount; i++) {
+      long word = bits[i];
+      // a bit differing from the one before it starts or ends a run
+      long changes = word ^ (word << 1 | carry);
+      carry = word >>> 63;
+
+      while (changes != 0) {
+        boundaries[count++] = (i << 6) + Long.numberOfTrailingZeros(changes);
+        changes &= changes - 1;
+      }
+    }
+
+    if (carry != 0) {
+      boundaries[count++] = wordCount << 6;
+    }
+
+    return count;
+  }
+}
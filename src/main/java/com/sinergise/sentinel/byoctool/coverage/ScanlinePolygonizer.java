@@ -0,0 +1,295 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.coverage.Vectorization.AffineTransform;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Polygonizes a mask in a single pass over its rows. Runs of valid pixels of each row are merged
+ * with the runs of the row above along the pixel edges between the two rows, growing open chains
+ * of boundary corners. Chains meeting each other are joined, and a chain meeting itself is a
+ * closed ring. No geometries are built until all rings are closed, and no overlay operations are
+ * needed.
+ *
+ * <p>Boundaries run with valid pixels on the right, as in {@link ContourTracer}. Runs continuing
+ * straight down add no corners. Where two valid pixels touch only diagonally, the boundary turns
+ * around each of them, and rings passing such a corner twice are split there into a shell and a
+ * hole touching it.
+ */
+class ScanlinePolygonizer {
+
+  // edges leaving a corner, those above and left of it are swept already
+  private static final int UP = 0;
+  private static final int DOWN = 1;
+  private static final int LEFT = 2;
+  private static final int RIGHT = 3;
+
+  /** Chains open at each edge of the current corner. */
+  private final Chain[] edges = new Chain[4];
+  private final List<PixelRing> rings = new ArrayList<>();
+
+  /** Returns polygons of valid pixels of the mask, or null if there are none. */
+  static Geometry polygonize(ValidMask mask, AffineTransform affine) {
+    ScanlinePolygonizer polygonizer = new ScanlinePolygonizer();
+    polygonizer.sweep(mask);
+    return PixelRing.toGeometry(polygonizer.rings, affine);
+  }
+
+  private void sweep(ValidMask mask) {
+    int width = mask.width();
+    long[] rowBits = new long[RowBits.words(width)];
+    int[] above = new int[width + 1];
+    int[] below = new int[width + 1];
+    Chain[] aboveChains = new Chain[width + 1];
+    Chain[] belowChains = new Chain[width + 1];
+    int aboveCount = 0;
+
+    // the line below the last row closes all chains
+    for (int y = 0; y <= mask.height(); y++) {
+      int belowCount = 0;
+      if (y < mask.height()) {
+        mask.getRow(y, rowBits);
+        belowCount = RowBits.boundaries(rowBits, width, below);
+      }
+
+      sweepLine(y, above, aboveCount, aboveChains, below, belowCount, belowChains);
+
+      int[] boundaries = above;
+      above = below;
+      below = boundaries;
+      Chain[] chains = aboveChains;
+      aboveChains = belowChains;
+      belowChains = chains;
+      aboveCount = belowCount;
+    }
+  }
+
+  /**
+   * Connects the chains open at run boundaries of the row above the line with the edges of the
+   * line and with new chains open at run boundaries of the row below it.
+   */
+  private void sweepLine(
+      int y, int[] above, int aboveCount, Chain[] aboveChains,
+      int[] below, int belowCount, Chain[] belowChains) {
+    int i = 0;
+    int j = 0;
+    Chain right = null;
+
+    while (i < aboveCount || j < belowCount) {
+      int x = Math.min(
+          i < aboveCount ? above[i] : Integer.MAX_VALUE,
+          j < belowCount ? below[j] : Integer.MAX_VALUE);
+      // an odd number of boundaries so far is inside of a run
+      boolean topLeft = (i & 1) == 1;
+      boolean bottomLeft = (j & 1) == 1;
+
+      edges[UP] = null;
+      edges[DOWN] = null;
+      edges[LEFT] = right;
+      edges[RIGHT] = null;
+
+      if (i < aboveCount && above[i] == x) {
+        edges[UP] = aboveChains[i++];
+      }
+      int belowIndex = j;
+      if (j < belowCount && below[j] == x) {
+        j++;
+      }
+
+      boolean topRight = (i & 1) == 1;
+      boolean bottomRight = (j & 1) == 1;
+
+      if (topLeft == bottomRight && topRight == bottomLeft) {
+        // diagonal pixels are kept apart by turning right around each of them
+        if (topLeft) {
+          connect(UP, LEFT, x, y, true);
+          connect(DOWN, RIGHT, x, y, true);
+        } else {
+          connect(LEFT, DOWN, x, y, true);
+          connect(RIGHT, UP, x, y, true);
+        }
+      } else {
+        int in = topLeft != topRight && topLeft ? UP
+            : bottomLeft != bottomRight && bottomRight ? DOWN
+            : topLeft != bottomLeft && bottomLeft ? LEFT
+            : RIGHT;
+        int out = topLeft != topRight && topRight ? UP
+            : bottomLeft != bottomRight && bottomLeft ? DOWN
+            : topLeft != bottomLeft && topLeft ? LEFT
+            : RIGHT;
+        connect(in, out, x, y, false);
+      }
+
+      if (j > belowIndex) {
+        belowChains[belowIndex] = edges[DOWN];
+      }
+      right = edges[RIGHT];
+    }
+  }
+
+  /**
+   * Connects the edge entering the corner with the edge leaving it. Chains are open at edges up
+   * and left of the corner, edges down and right of it get the chain passing the corner.
+   */
+  private void connect(int in, int out, int x, int y, boolean saddle) {
+    Chain inChain = in == UP || in == LEFT ? edges[in].find() : null;
+    Chain outChain = out == UP || out == LEFT ? edges[out].find() : null;
+    boolean turn = !(in == UP && out == DOWN || in == DOWN && out == UP);
+
+    if (inChain == null && outChain == null) {
+      Chain chain = new Chain();
+      chain.append(x, y, saddle);
+      edges[in] = chain;
+      edges[out] = chain;
+    } else if (outChain == null) {
+      if (turn) {
+        inChain.append(x, y, saddle);
+      }
+      edges[out] = inChain;
+    } else if (inChain == null) {
+      if (turn) {
+        outChain.prepend(x, y, saddle);
+      }
+      edges[in] = outChain;
+    } else {
+      inChain.append(x, y, saddle);
+      if (inChain == outChain) {
+        close(inChain);
+      } else {
+        inChain.join(outChain);
+      }
+    }
+  }
+
+  private void close(Chain chain) {
+    if (chain.saddles < 2) {
+      PixelRing ring = new PixelRing();
+      for (int i = chain.first; i < chain.end; i++) {
+        ring.add(chain.xs[i], chain.ys[i]);
+      }
+      ring.add(chain.xs[chain.first], chain.ys[chain.first]);
+      rings.add(ring);
+      return;
+    }
+
+    // the ring may pass a corner twice, split it into loops there
+    PixelRing ring = new PixelRing();
+    Map<Long, Integer> corners = new HashMap<>();
+
+    for (int i = chain.first; i <= chain.end; i++) {
+      int index = i < chain.end ? i : chain.first;
+      int x = chain.xs[index];
+      int y = chain.ys[index];
+      long key = ((long) x << 32) | (y & 0xFFFFFFFFL);
+      Integer previous = corners.get(key);
+
+      if (previous != null) {
+        rings.add(ring.splitFrom(previous, x, y));
+        corners.values().removeIf(corner -> corner > previous);
+      } else {
+        corners.put(key, ring.size());
+        ring.add(x, y);
+      }
+    }
+  }
+
+  /**
+   * Open boundary from its head to its tail, only corners where it turns are kept. Joined chains
+   * forward to the chain which took over their corners.
+   */
+  private static final class Chain {
+
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int first = 8;
+    private int end = 8;
+    private int saddles;
+    private Chain joined;
+
+    Chain find() {
+      Chain root = this;
+      while (root.joined != null) {
+        root = root.joined;
+      }
+
+      for (Chain chain = this; chain != root; ) {
+        Chain next = chain.joined;
+        chain.joined = root;
+        chain = next;
+      }
+
+      return root;
+    }
+
+    int size() {
+      return end - first;
+    }
+
+    void append(int x, int y, boolean saddle) {
+      ensureCapacity(0, 1);
+      xs[end] = x;
+      ys[end] = y;
+      end++;
+      if (saddle) {
+        saddles++;
+      }
+    }
+
+    void prepend(int x, int y, boolean saddle) {
+      ensureCapacity(1, 0);
+      first--;
+      xs[first] = x;
+      ys[first] = y;
+      if (saddle) {
+        saddles++;
+      }
+    }
+
+    /** Joins the chain whose head is at the tail of this one, copying the shorter one. */
+    void join(Chain next) {
+      if (size() >= next.size()) {
+        ensureCapacity(0, next.size());
+        System.arraycopy(next.xs, next.first, xs, end, next.size());
+        System.arraycopy(next.ys, next.first, ys, end, next.size());
+        end += next.size();
+        saddles += next.saddles;
+        next.release(this);
+      } else {
+        next.ensureCapacity(size(), 0);
+        next.first -= size();
+        System.arraycopy(xs, first, next.xs, next.first, size());
+        System.arraycopy(ys, first, next.ys, next.first, size());
+        next.saddles += saddles;
+        release(next);
+      }
+    }
+
+    private void release(Chain target) {
+      joined = target;
+      xs = null;
+      ys = null;
+    }
+
+    private void ensureCapacity(int before, int after) {
+      if (first >= before && xs.length - end >= after) {
+        return;
+      }
+
+      int size = size();
+      int capacity = Math.max(16, 2 * (size + before + after));
+      int newFirst = before + (capacity - size - before - after) / 2;
+      int[] newXs = new int[capacity];
+      int[] newYs = new int[capacity];
+      System.arraycopy(xs, first, newXs, newFirst, size);
+      System.arraycopy(ys, first, newYs, newFirst, size);
+
+      xs = newXs;
+      ys = newYs;
+      first = newFirst;
+      end = newFirst + size;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata.Image;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.stream.ImageInputStream;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Validity of tiles known from the tile offsets and byte counts of an image. Tiles left out of
+ * sparse files hold only no-data. Small tiles with the same bytes, typically constant tiles which
+ * compress to a few bytes, decode to the same pixels, so once one of them is decoded the others
+ * are known to be wholly valid or wholly invalid if it was.
+ */
+@Log4j2
+class TileContents implements TileGuide {
+
+  /** Tiles larger than this are not compared, as they hardly ever share bytes. */
+  private static final long MAX_COMPARED_TILE_BYTES = 16 * 1024;
+
+  private static final int EMPTY = -1;
+  private static final int UNIQUE = -2;
+
+  private static final byte UNKNOWN = 0;
+  private static final byte VALID = 1;
+  private static final byte INVALID = 2;
+  private static final byte MIXED = 3;
+
+  private final int width;
+  private final int height;
+  private final int tileWidth;
+  private final int tileHeight;
+  private final int columns;
+  private final int[] tileGroups;
+  private final byte[] groupValidity;
+
+  private TileContents(Image image, int columns, int[] tileGroups, int groups) {
+    this.width = Math.toIntExact(image.width());
+    this.height = Math.toIntExact(image.height());
+    this.tileWidth = Math.toIntExact(image.tileWidth());
+    this.tileHeight = Math.toIntExact(image.tileHeight());
+    this.columns = columns;
+    this.tileGroups = tileGroups;
+    this.groupValidity = new byte[groups];
+  }
+
+  /**
+   * Reads the bytes of small tiles of the image sharing their size with other tiles and groups
+   * tiles with the same bytes. Returns null if the image is not tiled or has a tile per band.
+   */
+  static TileContents read(ImageInputStream iis, Image image) throws IOException {
+    long[] offsets = image.tileOffsets();
+    long[] byteCounts = image.tileByteCounts();
+
+    if (offsets == null || byteCounts == null || offsets.length != byteCounts.length
+        || image.tileWidth() == null || image.tileHeight() == null) {
+      return null;
+    }
+
+    int columns = Math.toIntExact(
+        (image.width() + image.tileWidth() - 1) / image.tileWidth());
+    int rows = Math.toIntExact(
+        (image.height() + image.tileHeight() - 1) / image.tileHeight());
+    if (offsets.length != (long) columns * rows) {
+      return null;
+    }
+
+    Map<Long, Integer> tilesOfSize = new HashMap<>();
+    for (int tile = 0; tile < offsets.length; tile++) {
+      if (!isEmpty(offsets, byteCounts, tile) && byteCounts[tile] <= MAX_COMPARED_TILE_BYTES) {
+        tilesOfSize.merge(byteCounts[tile], 1, Integer::sum);
+      }
+    }
+
+    Map<ByteBuffer, Integer> groups = new HashMap<>();
+    int[] tileGroups = new int[offsets.length];
+    int emptyTiles;
+
+    // the stream is shared with the reader
+    iis.mark();
+    try {
+      emptyTiles = group(iis, offsets, byteCounts, tilesOfSize, groups, tileGroups);
+    } finally {
+      iis.reset();
+    }
+
+    log.debug("Found {} empty tiles and {} groups of tiles with the same bytes among {} tiles.",
+        emptyTiles, groups.size(), offsets.length);
+
+    return new TileContents(image, columns, tileGroups, groups.size());
+  }
+
+  private static int group(
+      ImageInputStream iis, long[] offsets, long[] byteCounts, Map<Long, Integer> tilesOfSize,
+      Map<ByteBuffer, Integer> groups, int[] tileGroups) throws IOException {
+    int emptyTiles = 0;
+
+    for (int tile = 0; tile < offsets.length; tile++) {
+      if (isEmpty(offsets, byteCounts, tile)) {
+        tileGroups[tile] = EMPTY;
+        emptyTiles++;
+      } else if (tilesOfSize.getOrDefault(byteCounts[tile], 0) < 2) {
+        tileGroups[tile] = UNIQUE;
+      } else {
+        byte[] bytes = new byte[(int) byteCounts[tile]];
+        iis.seek(offsets[tile]);
+        iis.readFully(bytes);
+        tileGroups[tile] = groups.computeIfAbsent(ByteBuffer.wrap(bytes), key -> groups.size());
+      }
+    }
+
+    return emptyTiles;
+  }
+
+  private static boolean isEmpty(long[] offsets, long[] byteCounts, int tile) {
+    return offsets[tile] == 0 || byteCounts[tile] == 0;
+  }
+
+  @Override
+  public Boolean uniformValidity(int column, int row) {
+    int group = tileGroups[row * columns + column];
+
+    if (group == EMPTY) {
+      return false;
+    }
+    if (group == UNIQUE || groupValidity[group] == UNKNOWN || groupValidity[group] == MIXED) {
+      return null;
+    }
+
+    return groupValidity[group] == VALID;
+  }
+
+  /**
+   * Clears empty tiles, which the TIFF reader does not decode as no-data, and learns the validity
+   * of groups from whole tiles of the row.
+   */
+  @Override
+  public void decoded(ValidMask mask, int row) {
+    int minY = row * tileHeight;
+    int maxY = Math.min(minY + tileHeight, height);
+
+    for (int column = 0; column < columns; column++) {
+      int group = tileGroups[row * columns + column];
+      int minX = column * tileWidth;
+      int maxX = Math.min(minX + tileWidth, width);
+
+      if (group == EMPTY) {
+        for (int y = minY; y < maxY; y++) {
+          mask.clearRange(y, minX, maxX);
+        }
+      } else if (group >= 0 && groupValidity[group] == UNKNOWN
+          && maxX - minX == tileWidth && maxY - minY == tileHeight) {
+        // pixels of partial tiles past the image may differ from those inside of it
+        Boolean validity = mask.uniformValidity(minX, minY, maxX, maxY);
+        groupValidity[group] = validity == null ? MIXED : validity ? VALID : INVALID;
+      }
+    }
+  }
+}
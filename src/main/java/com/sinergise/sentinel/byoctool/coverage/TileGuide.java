@@ -0,0 +1,22 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+/**
+ * Tells whether tiles of an image are wholly valid or wholly invalid without decoding them, see
+ * {@link GuidedMask}.
+ */
+interface TileGuide extends AutoCloseable {
+
+  /**
+   * Returns whether all pixels of the tile in the given column and row are valid or all are
+   * invalid, or null if that is not known.
+   */
+  Boolean uniformValidity(int column, int row);
+
+  /** Called after the row of tiles has been decoded into the mask. */
+  default void decoded(ValidMask mask, int row) {
+  }
+
+  @Override
+  default void close() {
+  }
+}
@@ -0,0 +1,228 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+/**
+ * Bitmask of valid pixels of a whole image, each row packed into longs as in {@link RowBits}.
+ * Bits past the width of a row are always clear.
+ *
+ * <p>With a directory, bits are stored in a memory-mapped temporary file in it, so masks may
+ * have more pixels than fit into memory. Otherwise they are stored in native memory, or on the
+ * heap if the foreign memory API is not available because Java was started without
+ * {@code --enable-preview}. Either way the bits are shared by all threads and released, and the
+ * file deleted, once the mask is closed.
+ */
+final class ValidMask implements AutoCloseable {
+
+  private static final boolean NATIVE_MEMORY = nativeMemoryAvailable();
+
+  private final int width;
+  private final int height;
+  private final int rowWords;
+  private final Path directory;
+  private final MaskWords bits;
+
+  ValidMask(int width, int height) {
+    this(width, height, null);
+  }
+
+  /** Allocates an empty mask, in a memory-mapped file in the directory unless it is null. */
+  ValidMask(int width, int height, Path directory) {
+    this(width, height, directory, words(RowBits.words(width), height, directory));
+  }
+
+  private ValidMask(int width, int height, Path directory, MaskWords bits) {
+    this.width = width;
+    this.height = height;
+    this.rowWords = RowBits.words(width);
+    this.directory = directory;
+    this.bits = bits;
+  }
+
+  /** Allocates an empty mask on the heap, as when the foreign memory API is not available. */
+  static ValidMask onHeap(int width, int height) {
+    return new ValidMask(
+        width, height, null, new HeapMaskWords((long) RowBits.words(width) * height));
+  }
+
+  private static MaskWords words(int rowWords, int height, Path directory) {
+    long size = (long) rowWords * height;
+
+    if (directory != null) {
+      try {
+        return NativeMaskWords.map(size, directory);
+      } catch (LinkageError e) {
+        throw new IllegalStateException(
+            "Keeping masks in files needs Java to be started with --enable-preview.", e);
+      }
+    }
+
+    return NATIVE_MEMORY ? NativeMaskWords.allocate(size) : new HeapMaskWords(size);
+  }
+
+  private static boolean nativeMemoryAvailable() {
+    try {
+      NativeMaskWords.allocate(1).close();
+      return true;
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+
+  /** Decodes the image in strips of the given height and marks its valid pixels. */
+  static ValidMask read(
+      ImageReader reader, int imageIndex, int stripHeight, double noDataValue, Path directory)
+      throws IOException {
+    int width = reader.getWidth(imageIndex);
+    int height = reader.getHeight(imageIndex);
+    ValidMask mask = new ValidMask(width, height, directory);
+    long[] rowBits = new long[mask.rowWords];
+    ImageReadParam param = reader.getDefaultReadParam();
+
+    try {
+      for (int stripY = 0; stripY < height; stripY += stripHeight) {
+        param.setSourceRegion(
+            new Rectangle(0, stripY, width, Math.min(stripHeight, height - stripY)));
+        Raster strip = reader.read(imageIndex, param).getRaster();
+        ValidPixelScanner scanner = ValidPixelScanner.of(strip, noDataValue);
+
+        for (int y = 0; y < strip.getHeight(); y++) {
+          scanner.scanRow(y, rowBits);
+          mask.setRow(stripY + y, rowBits);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      mask.close();
+      throw e;
+    }
+
+    return mask;
+  }
+
+  /** Allocates an empty mask of the given size, stored the same way as this one. */
+  ValidMask allocateAlike(int width, int height) {
+    if (bits instanceof HeapMaskWords) {
+      return onHeap(width, height);
+    }
+
+    return new ValidMask(width, height, directory);
+  }
+
+  int width() {
+    return width;
+  }
+
+  int height() {
+    return height;
+  }
+
+  /** Returns whether the pixel is valid, pixels outside of the mask are not. */
+  boolean get(int x, int y) {
+    if (x < 0 || y < 0 || x >= width || y >= height) {
+      return false;
+    }
+
+    return (bits.get(word(x, y)) & (1L << x)) != 0;
+  }
+
+  /** Marks the pixel as valid. */
+  void set(int x, int y) {
+    long word = word(x, y);
+    bits.set(word, bits.get(word) | (1L << x));
+  }
+
+  void setRow(int y, long[] rowBits) {
+    bits.copyFrom(rowBits, (long) y * rowWords, rowWords);
+  }
+
+  /** Marks pixels of the row from {@code from} inclusive to {@code to} exclusive as valid. */
+  void setRange(int y, int from, int to) {
+    updateRange(y, from, to, true);
+  }
+
+  /** Marks pixels of the row from {@code from} inclusive to {@code to} exclusive as invalid. */
+  void clearRange(int y, int from, int to) {
+    updateRange(y, from, to, false);
+  }
+
+  private void updateRange(int y, int from, int to, boolean valid) {
+    if (from >= to) {
+      return;
+    }
+
+    long first = word(from, y);
+    long last = word(to - 1, y);
+    long firstMask = -1L << from;
+    long lastMask = -1L >>> -to;
+
+    if (first == last) {
+      updateWord(first, firstMask & lastMask, valid);
+      return;
+    }
+
+    updateWord(first, firstMask, valid);
+    bits.fill(first + 1, last, valid ? -1L : 0L);
+    updateWord(last, lastMask, valid);
+  }
+
+  private void updateWord(long word, long mask, boolean valid) {
+    long value = bits.get(word);
+    bits.set(word, valid ? value | mask : value & ~mask);
+  }
+
+  /**
+   * Returns whether all pixels of the rectangle, which must lie within the mask, are valid or all
+   * are invalid, or null if they are mixed.
+   */
+  Boolean uniformValidity(int minX, int minY, int maxX, int maxY) {
+    boolean valid = get(minX, minY);
+    long expected = valid ? -1L : 0L;
+    int firstWord = minX >>> 6;
+    int lastWord = (maxX - 1) >>> 6;
+
+    for (int y = minY; y < maxY; y++) {
+      for (int i = firstWord; i <= lastWord; i++) {
+        long mask = (i == firstWord ? -1L << minX : -1L) & (i == lastWord ? -1L >>> -maxX : -1L);
+        if (((bits.get((long) y * rowWords + i) ^ expected) & mask) != 0) {
+          return null;
+        }
+      }
+    }
+
+    return valid;
+  }
+
+  /** Keeps only pixels which are valid in both masks, the masks must have the same size. */
+  void and(ValidMask other) {
+    if (other.width != width || other.height != height) {
+      throw new IllegalArgumentException(String.format(
+          "Mask of %dx%d pixels cannot be combined with a mask of %dx%d pixels.",
+          other.width, other.height, width, height));
+    }
+
+    long words = (long) rowWords * height;
+    for (long i = 0; i < words; i++) {
+      bits.set(i, bits.get(i) & other.bits.get(i));
+    }
+  }
+
+  /** Copies the row into the given array of at least {@link RowBits#words} longs. */
+  void getRow(int y, long[] rowBits) {
+    bits.copyTo((long) y * rowWords, rowBits, rowWords);
+  }
+
+  /** Releases the memory of the mask and deletes its file, the mask must not be used after. */
+  @Override
+  public void close() {
+    bits.close();
+  }
+
+  private long word(int x, int y) {
+    return (long) y * rowWords + (x >>> 6);
+  }
+}
@@ -0,0 +1,350 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+
+/**
+ * Marks valid pixels of the first band of a raster, one row at a time, into a row of bits (see
+ * {@link RowBits}). A pixel is valid unless its sample equals the no-data value, compared in the
+ * sample type the way GDAL does, so a NaN no-data value matches NaN samples and a no-data value
+ * which the sample type cannot hold matches nothing.
+ *
+ * <p>Rasters with a component sample model, which is what the TIFF reader produces for single
+ * band images, are read straight from the backing array of their data buffer, comparing many
+ * samples at once with the vector API if the {@code jdk.incubator.vector} module is present and
+ * samples of a row are contiguous. Other rasters go through {@link Raster#getSamples}.
+ */
+abstract class ValidPixelScanner {
+
+  static final boolean VECTOR_API_AVAILABLE =
+      ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+  final int width;
+
+  ValidPixelScanner(int width) {
+    this.width = width;
+  }
+
+  static ValidPixelScanner of(Raster raster, double noDataValue) {
+    return of(raster, noDataValue, VECTOR_API_AVAILABLE);
+  }
+
+  static ValidPixelScanner of(Raster raster, double noDataValue, boolean vectorized) {
+    SampleModel sampleModel = raster.getSampleModel();
+
+    if (!(sampleModel instanceof ComponentSampleModel)) {
+      return new GenericScanner(raster, noDataValue);
+    }
+
+    ComponentSampleModel csm = (ComponentSampleModel) sampleModel;
+    DataBuffer dataBuffer = raster.getDataBuffer();
+    int bank = csm.getBankIndices()[0];
+    Layout layout = new Layout(
+        dataBuffer.getOffsets()[bank]
+            + csm.getOffset(
+                raster.getMinX() - raster.getSampleModelTranslateX(),
+                raster.getMinY() - raster.getSampleModelTranslateY(),
+                0),
+        csm.getScanlineStride(),
+        csm.getPixelStride());
+    int width = raster.getWidth();
+
+    if (vectorized && layout.pixelStride == 1) {
+      ValidPixelScanner scanner =
+          VectorValidPixelScanner.of(dataBuffer, bank, width, layout, noDataValue);
+      if (scanner != null) {
+        return scanner;
+      }
+    }
+
+    switch (dataBuffer.getDataType()) {
+      case DataBuffer.TYPE_BYTE:
+        return new ByteScanner(width, layout, ((DataBufferByte) dataBuffer).getData(bank),
+            integerNoData(noDataValue, 0, 0xFF));
+      case DataBuffer.TYPE_USHORT:
+        return new UShortScanner(width, layout, ((DataBufferUShort) dataBuffer).getData(bank),
+            integerNoData(noDataValue, 0, 0xFFFF));
+      case DataBuffer.TYPE_SHORT:
+        return new ShortScanner(width, layout, ((DataBufferShort) dataBuffer).getData(bank),
+            integerNoData(noDataValue, Short.MIN_VALUE, Short.MAX_VALUE));
+      case DataBuffer.TYPE_INT:
+        return new IntScanner(width, layout, ((DataBufferInt) dataBuffer).getData(bank),
+            integerNoData(noDataValue, Integer.MIN_VALUE, Integer.MAX_VALUE));
+      case DataBuffer.TYPE_FLOAT:
+        return new FloatScanner(width, layout, ((DataBufferFloat) dataBuffer).getData(bank),
+            (float) noDataValue);
+      case DataBuffer.TYPE_DOUBLE:
+        return new DoubleScanner(width, layout, ((DataBufferDouble) dataBuffer).getData(bank),
+            noDataValue);
+      default:
+        return new GenericScanner(raster, noDataValue);
+    }
+  }
+
+  /** Sets the bits of valid pixels in the row of the raster and clears all others. */
+  abstract void scanRow(int y, long[] rowBits);
+
+  /** Returns the no-data value as an integer sample, or null if no sample can be equal to it. */
+  static Long integerNoData(double noDataValue, long min, long max) {
+    if (noDataValue != Math.rint(noDataValue) || noDataValue < min || noDataValue > max) {
+      return null;
+    }
+
+    return (long) noDataValue;
+  }
+
+  static final class Layout {
+
+    final int offset;
+    final int scanlineStride;
+    final int pixelStride;
+
+    Layout(int offset, int scanlineStride, int pixelStride) {
+      this.offset = offset;
+      this.scanlineStride = scanlineStride;
+      this.pixelStride = pixelStride;
+    }
+
+    int rowStart(int y) {
+      return offset + y * scanlineStride;
+    }
+  }
+
+  private static final class ByteScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final byte[] data;
+    private final Long noData;
+
+    ByteScanner(int width, Layout layout, byte[] data, Long noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      if (noData == null) {
+        RowBits.setAll(rowBits, width);
+        return;
+      }
+
+      RowBits.clear(rowBits, width);
+      int noDataSample = noData.intValue();
+      int stride = layout.pixelStride;
+
+      for (int x = 0, i = layout.rowStart(y); x < width; x++, i += stride) {
+        if ((data[i] & 0xFF) != noDataSample) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+
+  private static final class UShortScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final short[] data;
+    private final Long noData;
+
+    UShortScanner(int width, Layout layout, short[] data, Long noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      if (noData == null) {
+        RowBits.setAll(rowBits, width);
+        return;
+      }
+
+      RowBits.clear(rowBits, width);
+      int noDataSample = noData.intValue();
+      int stride = layout.pixelStride;
+
+      for (int x = 0, i = layout.rowStart(y); x < width; x++, i += stride) {
+        if ((data[i] & 0xFFFF) != noDataSample) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+
+  private static final class ShortScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final short[] data;
+    private final Long noData;
+
+    ShortScanner(int width, Layout layout, short[] data, Long noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      if (noData == null) {
+        RowBits.setAll(rowBits, width);
+        return;
+      }
+
+      RowBits.clear(rowBits, width);
+      short noDataSample = noData.shortValue();
+      int stride = layout.pixelStride;
+
+      for (int x = 0, i = layout.rowStart(y); x < width; x++, i += stride) {
+        if (data[i] != noDataSample) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+
+  private static final class IntScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final int[] data;
+    private final Long noData;
+
+    IntScanner(int width, Layout layout, int[] data, Long noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      if (noData == null) {
+        RowBits.setAll(rowBits, width);
+        return;
+      }
+
+      RowBits.clear(rowBits, width);
+      int noDataSample = noData.intValue();
+      int stride = layout.pixelStride;
+
+      for (int x = 0, i = layout.rowStart(y); x < width; x++, i += stride) {
+        if (data[i] != noDataSample) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+
+  private static final class FloatScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final float[] data;
+    private final float noData;
+
+    FloatScanner(int width, Layout layout, float[] data, float noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      RowBits.clear(rowBits, width);
+      int stride = layout.pixelStride;
+      int i = layout.rowStart(y);
+
+      if (Float.isNaN(noData)) {
+        for (int x = 0; x < width; x++, i += stride) {
+          float sample = data[i];
+          if (sample == sample) {
+            rowBits[x >>> 6] |= 1L << x;
+          }
+        }
+      } else {
+        for (int x = 0; x < width; x++, i += stride) {
+          if (data[i] != noData) {
+            rowBits[x >>> 6] |= 1L << x;
+          }
+        }
+      }
+    }
+  }
+
+  private static final class DoubleScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final double[] data;
+    private final double noData;
+
+    DoubleScanner(int width, Layout layout, double[] data, double noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      RowBits.clear(rowBits, width);
+      int stride = layout.pixelStride;
+      int i = layout.rowStart(y);
+
+      if (Double.isNaN(noData)) {
+        for (int x = 0; x < width; x++, i += stride) {
+          double sample = data[i];
+          if (sample == sample) {
+            rowBits[x >>> 6] |= 1L << x;
+          }
+        }
+      } else {
+        for (int x = 0; x < width; x++, i += stride) {
+          if (data[i] != noData) {
+            rowBits[x >>> 6] |= 1L << x;
+          }
+        }
+      }
+    }
+  }
+
+  /** Reads samples of a row through the raster into a reused buffer. */
+  private static final class GenericScanner extends ValidPixelScanner {
+
+    private final Raster raster;
+    private final double noData;
+    private final double[] samples;
+
+    GenericScanner(Raster raster, double noData) {
+      super(raster.getWidth());
+      this.raster = raster;
+      this.noData = noData;
+      this.samples = new double[raster.getWidth()];
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      RowBits.clear(rowBits, width);
+      raster.getSamples(raster.getMinX(), raster.getMinY() + y, width, 1, 0, samples);
+      boolean nanNoData = Double.isNaN(noData);
+
+      for (int x = 0; x < width; x++) {
+        double sample = samples[x];
+        boolean noDataSample = nanNoData ? Double.isNaN(sample) : sample == noData;
+        if (!noDataSample) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import com.sinergise.sentinel.byoctool.coverage.ValidPixelScanner.Layout;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scanners comparing as many samples at once as the widest vector of the CPU holds, up to 512
+ * bits, for rows with contiguous samples. A vector has at most 64 lanes and the number of lanes
+ * divides 64, so the mask of a vector always fits into one word of the row bits at an offset
+ * which is a multiple of the number of lanes. Samples past the last whole vector are compared one
+ * by one.
+ *
+ * <p>Must only be loaded if the {@code jdk.incubator.vector} module is present.
+ */
+final class VectorValidPixelScanner {
+
+  private static final VectorShape SHAPE =
+      VectorShape.preferredShape().vectorBitSize() > 512
+          ? VectorShape.S_512_BIT
+          : VectorShape.preferredShape();
+
+  private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class, SHAPE);
+  private static final VectorSpecies<Short> SHORTS = VectorSpecies.of(short.class, SHAPE);
+  private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, SHAPE);
+  private static final VectorSpecies<Float> FLOATS = VectorSpecies.of(float.class, SHAPE);
+  private static final VectorSpecies<Double> DOUBLES = VectorSpecies.of(double.class, SHAPE);
+
+  private VectorValidPixelScanner() {
+  }
+
+  /**
+   * Returns a vectorized scanner for the first bank of the data buffer, or null if there is none
+   * for its data type or the no-data value matches no sample, where the scalar scanner is as
+   * fast.
+   */
+  static ValidPixelScanner of(
+      DataBuffer dataBuffer, int bank, int width, Layout layout, double noDataValue) {
+    Long integerNoData;
+
+    switch (dataBuffer.getDataType()) {
+      case DataBuffer.TYPE_BYTE:
+        integerNoData = ValidPixelScanner.integerNoData(noDataValue, 0, 0xFF);
+        return integerNoData == null ? null : new ByteScanner(width, layout,
+            ((DataBufferByte) dataBuffer).getData(bank), integerNoData.byteValue());
+      case DataBuffer.TYPE_USHORT:
+        integerNoData = ValidPixelScanner.integerNoData(noDataValue, 0, 0xFFFF);
+        return integerNoData == null ? null : new ShortScanner(width, layout,
+            ((DataBufferUShort) dataBuffer).getData(bank), integerNoData.shortValue());
+      case DataBuffer.TYPE_SHORT:
+        integerNoData =
+            ValidPixelScanner.integerNoData(noDataValue, Short.MIN_VALUE, Short.MAX_VALUE);
+        return integerNoData == null ? null : new ShortScanner(width, layout,
+            ((DataBufferShort) dataBuffer).getData(bank), integerNoData.shortValue());
+      case DataBuffer.TYPE_INT:
+        integerNoData =
+            ValidPixelScanner.integerNoData(noDataValue, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        return integerNoData == null ? null : new IntScanner(width, layout,
+            ((DataBufferInt) dataBuffer).getData(bank), integerNoData.intValue());
+      case DataBuffer.TYPE_FLOAT:
+        return new FloatScanner(width, layout, ((DataBufferFloat) dataBuffer).getData(bank),
+            (float) noDataValue);
+      case DataBuffer.TYPE_DOUBLE:
+        return new DoubleScanner(width, layout, ((DataBufferDouble) dataBuffer).getData(bank),
+            noDataValue);
+      default:
+        return null;
+    }
+  }
+
+  private static final class ByteScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final byte[] data;
+    private final byte noData;
+
+    ByteScanner(int width, Layout layout, byte[] data, byte noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      RowBits.clear(rowBits, width);
+      int start = layout.rowStart(y);
+      int x = 0;
+
+      for (int bound = BYTES.loopBound(width); x < bound; x += BYTES.length()) {
+        rowBits[x >>> 6] |= ByteVector.fromArray(BYTES, data, start + x)
+            .compare(VectorOperators.NE, noData)
+            .toLong() << x;
+      }
+
+      for (; x < width; x++) {
+        if (data[start + x] != noData) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+
+  /** Compares signed and unsigned shorts alike, as only equality matters. */
+  private static final class ShortScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final short[] data;
+    private final short noData;
+
+    ShortScanner(int width, Layout layout, short[] data, short noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      RowBits.clear(rowBits, width);
+      int start = layout.rowStart(y);
+      int x = 0;
+
+      for (int bound = SHORTS.loopBound(width); x < bound; x += SHORTS.length()) {
+        rowBits[x >>> 6] |= ShortVector.fromArray(SHORTS, data, start + x)
+            .compare(VectorOperators.NE, noData)
+            .toLong() << x;
+      }
+
+      for (; x < width; x++) {
+        if (data[start + x] != noData) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+
+  private static final class IntScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final int[] data;
+    private final int noData;
+
+    IntScanner(int width, Layout layout, int[] data, int noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      RowBits.clear(rowBits, width);
+      int start = layout.rowStart(y);
+      int x = 0;
+
+      for (int bound = INTS.loopBound(width); x < bound; x += INTS.length()) {
+        rowBits[x >>> 6] |= IntVector.fromArray(INTS, data, start + x)
+            .compare(VectorOperators.NE, noData)
+            .toLong() << x;
+      }
+
+      for (; x < width; x++) {
+        if (data[start + x] != noData) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+
+  private static final class FloatScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final float[] data;
+    private final float noData;
+
+    FloatScanner(int width, Layout layout, float[] data, float noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      RowBits.clear(rowBits, width);
+      int start = layout.rowStart(y);
+      boolean nanNoData = Float.isNaN(noData);
+      int x = 0;
+
+      for (int bound = FLOATS.loopBound(width); x < bound; x += FLOATS.length()) {
+        FloatVector samples = FloatVector.fromArray(FLOATS, data, start + x);
+        long valid = nanNoData
+            ? samples.test(VectorOperators.IS_NAN).not().toLong()
+            : samples.compare(VectorOperators.NE, noData).toLong();
+        rowBits[x >>> 6] |= valid << x;
+      }
+
+      for (; x < width; x++) {
+        float sample = data[start + x];
+        if (nanNoData ? sample == sample : sample != noData) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+
+  private static final class DoubleScanner extends ValidPixelScanner {
+
+    private final Layout layout;
+    private final double[] data;
+    private final double noData;
+
+    DoubleScanner(int width, Layout layout, double[] data, double noData) {
+      super(width);
+      this.layout = layout;
+      this.data = data;
+      this.noData = noData;
+    }
+
+    @Override
+    void scanRow(int y, long[] rowBits) {
+      RowBits.clear(rowBits, width);
+      int start = layout.rowStart(y);
+      boolean nanNoData = Double.isNaN(noData);
+      int x = 0;
+
+      for (int bound = DOUBLES.loopBound(width); x < bound; x += DOUBLES.length()) {
+        DoubleVector samples = DoubleVector.fromArray(DOUBLES, data, start + x);
+        long valid = nanNoData
+            ? samples.test(VectorOperators.IS_NAN).not().toLong()
+            : samples.compare(VectorOperators.NE, noData).toLong();
+        rowBits[x >>> 6] |= valid << x;
+      }
+
+      for (; x < width; x++) {
+        double sample = data[start + x];
+        if (nanNoData ? sample == sample : sample != noData) {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+  }
+}
@@ -1,17 +1,21 @@
 package com.sinergise.sentinel.byoctool.coverage;
 
-import com.sinergise.sentinel.byoctool.tiff.TiffCompoundDirectory;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBuffer;
-import java.awt.image.Raster;
+import com.sinergise.sentinel.byoctool.cli.CoverageTracingConfig.TracingEngine;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata.Image;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveTask;
-import java.util.function.Predicate;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import lombok.RequiredArgsConstructor;
 import lombok.Value;
-import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
@@ -19,31 +23,126 @@ import org.locationtech.jts.operation.union.CascadedPolygonUnion;
 
 class Vectorization {
 
-  static Geometry vectorize(BufferedImage image, TiffCompoundDirectory directory) {
-    Envelope envelope = directory.envelope();
+  private static final int DEFAULT_STRIP_HEIGHT = 256;
 
-    AffineTransform affineTransform =
-        new AffineTransform(
-            envelope.getWidth() / image.getWidth(),
-            -envelope.getHeight() / image.getHeight(),
-            envelope.getMinX(),
-            envelope.getMaxY());
+  private static final int MASK_STRIP_HEIGHT = 256;
 
-    Integer noDataValue = directory.noDataValueAsInt();
-    Predicate<Number> pixelPredicate = val -> !val.equals(noDataValue);
+  private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
 
-    return vectorize(image, affineTransform, pixelPredicate);
+  /**
+   * Returns the pool shared by all tracing with the given number of threads, or the common pool
+   * if the number is not positive.
+   */
+  static ForkJoinPool pool(int threads) {
+    if (threads <= 0) {
+      return ForkJoinPool.commonPool();
+    }
+
+    // worker threads of a fork join pool are daemon threads, so the pools are never shut down
+    return POOLS.computeIfAbsent(threads, ForkJoinPool::new);
   }
 
-  private static Geometry vectorize(
-      BufferedImage img, AffineTransform affine, Predicate<Number> predicate) {
-    return vectorize(new ForkJoinPool(1), img, affine, predicate);
+  /**
+   * Decodes the image at the given index in strips of whole TIFF tile rows into a mask of valid
+   * pixels. Returns null if the image has no no-data value, in which case every pixel is valid.
+   * Empty tiles of sparse files and tiles with the same bytes as a tile already decoded are not
+   * decoded, see {@link TileContents}. If pyramidal, only rows of tiles on boundaries of valid
+   * pixels in the lowest resolution overview are decoded, see {@link PyramidalMask}. The mask is stored in a memory-mapped file in
+   * the directory unless it is null.
+   */
+  static ValidMask readMask(
+      ImageReader reader, int imageIndex, TiffMetadata metadata, boolean pyramidal,
+      Path maskDirectory) throws IOException {
+    Double noDataValue = metadata.noDataValueAsDouble();
+
+    if (noDataValue == null) {
+      return null;
+    }
+
+    return readMask(reader, imageIndex, metadata, noDataValue, pyramidal, maskDirectory);
+  }
+
+  /** Decodes the image as above, with pixels equal to the given value as invalid. */
+  static ValidMask readMask(
+      ImageReader reader, int imageIndex, TiffMetadata metadata, double noDataValue,
+      boolean pyramidal, Path maskDirectory) throws IOException {
+    Image image = metadata.images().get(imageIndex);
+    List<TileGuide> guides = new ArrayList<>();
+
+    try {
+      if (reader.getInput() instanceof ImageInputStream) {
+        TileContents contents = TileContents.read((ImageInputStream) reader.getInput(), image);
+        if (contents != null) {
+          guides.add(contents);
+        }
+      }
+
+      int overviewIndex =
+          pyramidal ? PyramidalMask.coarsestOverview(metadata, imageIndex) : -1;
+      if (overviewIndex >= 0) {
+        guides.add(
+            PyramidalMask.read(reader, imageIndex, overviewIndex, metadata, noDataValue));
+      }
+
+      if (guides.isEmpty()) {
+        return ValidMask.read(
+            reader, imageIndex, stripHeight(metadata, imageIndex), noDataValue, maskDirectory);
+      }
+
+      return GuidedMask.read(reader, imageIndex, image, noDataValue, maskDirectory, guides);
+    } finally {
+      guides.forEach(TileGuide::close);
+    }
+  }
+
+  /**
+   * Vectorizes valid pixels of the mask. The runs engine splits the mask in strips of rows, which
+   * are vectorized on the pool and merged pairwise as neighbouring strips complete. The contour
+   * engine traces the boundaries of valid pixels in one pass, the scanline engine merges runs of
+   * consecutive rows into boundaries in one pass.
+   */
+  static Geometry vectorize(
+      ValidMask mask, AffineTransform affine, ForkJoinPool pool, TracingEngine engine) {
+    Geometry geometry;
+
+    if (engine == TracingEngine.CONTOUR) {
+      geometry = ContourTracer.trace(mask, affine);
+    } else if (engine == TracingEngine.SCANLINE) {
+      geometry = ScanlinePolygonizer.polygonize(mask, affine);
+    } else {
+      geometry = pool.invoke(new StripsUnionOp(new Strips(mask, affine), 0,
+          (mask.height() + MASK_STRIP_HEIGHT - 1) / MASK_STRIP_HEIGHT));
+    }
+
+    if (geometry == null) {
+      return new GeometryFactory().createPolygon();
+    }
+
+    return geometry;
+  }
+
+  static AffineTransform affineTransform(Envelope envelope, int width, int height) {
+    return new AffineTransform(
+        envelope.getWidth() / width,
+        -envelope.getHeight() / height,
+        envelope.getMinX(),
+        envelope.getMaxY());
+  }
+
+  static int stripHeight(TiffMetadata metadata, int imageIndex) {
+    Long tileHeight = metadata.images().get(imageIndex).tileHeight();
+
+    if (tileHeight == null) {
+      return DEFAULT_STRIP_HEIGHT;
+    }
+
+    return Math.toIntExact(tileHeight);
   }
 
+  /** Returns valid pixels of the rows of the mask, or null if there are none. */
   private static Geometry vectorize(
-      ForkJoinPool pool, BufferedImage img, AffineTransform affine, Predicate<Number> predicate) {
+      ValidMask mask, int fromRow, int toRow, AffineTransform affine) {
 
-    Raster raster = img.getRaster();
     GeometryFactory geometryFactory = new GeometryFactory();
 
     List<Geometry> geoms = new ArrayList<>();
@@ -51,69 +150,86 @@ class Vectorization {
     double pxSizeX = affine.getScaleX();
     double pxSizeY = affine.getScaleY();
 
-    int heightPixels = img.getHeight();
-    int widthPixels = img.getWidth();
-
-    int transferType = raster.getTransferType();
-    boolean isFloatDoubleType = isFloatDoubleType(transferType);
+    int widthPixels = mask.width();
+    long[] rowBits = new long[RowBits.words(widthPixels)];
 
-    for (int y = 0; y < heightPixels; y++) {
+    for (int y = fromRow; y < toRow; y++) {
+      mask.getRow(y, rowBits);
 
       List<Geometry> innerPolys = new ArrayList<>();
-      Coordinate prevPoint = null;
-
-      for (int x = 0; x < widthPixels; x++) {
-
-        Number value = getValue(raster, x, y, isFloatDoubleType);
-
-        if (predicate.test(value)) {
-          if (prevPoint == null) {
-            prevPoint = new Coordinate(x, y);
-          }
-          if (x == widthPixels - 1) {
-            double x1 = affine.getTranslateX() + prevPoint.x * pxSizeX;
-            double y1 = affine.getTranslateY() + prevPoint.y * pxSizeY;
-            double x2 = affine.getTranslateX() + (x + 1) * pxSizeX;
-            double y2 = affine.getTranslateY() + (y + 1) * pxSizeY;
-            Envelope pixelEnv = new Envelope(x1, x2, y1, y2);
-            innerPolys.add(geometryFactory.toGeometry(pixelEnv));
-            prevPoint = null;
-          }
-        } else {
-          if (prevPoint == null) {
-            continue;
-          }
-
-          double x1 = affine.getTranslateX() + prevPoint.x * pxSizeX;
-          double y1 = affine.getTranslateY() + prevPoint.y * pxSizeY;
-          double x2 = affine.getTranslateX() + x * pxSizeX;
-          double y2 = affine.getTranslateY() + (y + 1) * pxSizeY;
-          Envelope pixelEnv = new Envelope(x1, x2, y1, y2);
-          innerPolys.add(geometryFactory.toGeometry(pixelEnv));
-          prevPoint = null;
-        }
-      }
+      double y1 = affine.getTranslateY() + y * pxSizeY;
+      double y2 = affine.getTranslateY() + (y + 1) * pxSizeY;
+
+      RowBits.forEachRun(rowBits, widthPixels, (start, end) -> {
+        double x1 = affine.getTranslateX() + start * pxSizeX;
+        double x2 = affine.getTranslateX() + end * pxSizeX;
+        innerPolys.add(geometryFactory.toGeometry(new Envelope(x1, x2, y1, y2)));
+      });
 
       if (innerPolys.isEmpty()) {
         continue;
       }
 
-      Geometry innerUnion = pool.invoke(new GeometryUnionOp(innerPolys));
+      Geometry innerUnion = new GeometryUnionOp(innerPolys).invoke();
       geoms.add(innerUnion);
     }
 
-    return pool.invoke(new GeometryUnionOp(geoms));
+    if (geoms.isEmpty()) {
+      return null;
+    }
+
+    return new GeometryUnionOp(geoms).invoke();
   }
 
-  private static boolean isFloatDoubleType(int transferType) {
-    return transferType == DataBuffer.TYPE_FLOAT || transferType == DataBuffer.TYPE_DOUBLE;
+  @RequiredArgsConstructor
+  private static final class Strips {
+
+    private final ValidMask mask;
+    private final AffineTransform affine;
+
+    /** Returns valid pixels of the strip, or null if it has none. */
+    Geometry vectorize(int strip) {
+      int fromRow = strip * MASK_STRIP_HEIGHT;
+      int toRow = Math.min(fromRow + MASK_STRIP_HEIGHT, mask.height());
+
+      return Vectorization.vectorize(mask, fromRow, toRow, affine);
+    }
   }
 
-  private static Number getValue(Raster raster, int x, int y, boolean isFloatDoubleType) {
-    if (isFloatDoubleType) {
-      return raster.getSampleDouble(x, y, 0);
+  /** Vectorizes a range of strips, merging the halves of the range in parallel. */
+  private static class StripsUnionOp extends RecursiveTask<Geometry> {
+
+    private final Strips strips;
+    private final int from;
+    private final int to;
+
+    StripsUnionOp(Strips strips, int from, int to) {
+      this.strips = strips;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Geometry compute() {
+      if (to - from <= 1) {
+        return from < to ? strips.vectorize(from) : null;
+      }
+
+      int mid = (from + to) >>> 1;
+      StripsUnionOp upper = new StripsUnionOp(strips, from, mid);
+      upper.fork();
+      Geometry lower = new StripsUnionOp(strips, mid, to).compute();
+      Geometry upperGeometry = upper.join();
+
+      if (upperGeometry == null) {
+        return lower;
+      }
+      if (lower == null) {
+        return upperGeometry;
+      }
+
+      return new CascadedPolygonUnion(Arrays.asList(upperGeometry, lower)).union();
     }
-    return raster.getSample(x, y, 0);
   }
 
   private static class GeometryUnionOp extends RecursiveTask<Geometry> {
@@ -142,7 +258,7 @@ class Vectorization {
   }
 
   @Value
-  private static final class AffineTransform {
+  static final class AffineTransform {
 
     private final double scaleX;
     private final double scaleY;
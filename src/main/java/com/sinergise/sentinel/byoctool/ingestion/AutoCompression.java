@@ -0,0 +1,147 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import com.sinergise.sentinel.byoctool.ingestion.Compression.Codec;
+import com.sinergise.sentinel.byoctool.ingestion.RunReport.CompressionChoice;
+import com.sinergise.sentinel.byoctool.ingestion.RunReport.CompressionTrial;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Chooses a compression codec by encoding a sample window of a band with every candidate codec.
+ * The codec with the lowest weighted sum of relative encoding time and relative size wins.
+ *
+ * <p>A trial without compression is run first as a baseline. Its time, which with the command
+ * line backend is mostly starting GDAL and reading the window, is subtracted from the time of
+ * every codec, and the size of its TIFF headers from the size of every trial file, so time and
+ * ratio are of the encoding alone.
+ */
+@Log4j2
+@RequiredArgsConstructor
+class AutoCompression {
+
+  static final List<Compression> CANDIDATES = Arrays.asList(
+      Compression.DEFLATE,
+      new Compression(Codec.ZSTD, null),
+      new Compression(Codec.LZW, null),
+      new Compression(Codec.LERC, 0.0));
+
+  private static final int SAMPLE_SIZE = 2048;
+
+  /** Shortest encoding time, below which times are not measurable apart from the baseline. */
+  private static final double MIN_SECONDS = 1e-3;
+
+  private final double speedWeight;
+
+  CompressionChoice choose(Path inputPath, int bandIndex, TiffMetadata metadata,
+      Integer predictor, String band, Path trialFolder) {
+    int sampleWidth = (int) Math.min(SAMPLE_SIZE, metadata.imageWidth());
+    int sampleHeight = (int) Math.min(SAMPLE_SIZE, metadata.imageHeight());
+    long xOffset = (metadata.imageWidth() - sampleWidth) / 2;
+    long yOffset = (metadata.imageHeight() - sampleHeight) / 2;
+    long rawSize = (long) sampleWidth * sampleHeight * metadata.bitsPerSample() / 8;
+
+    List<String> windowOptions = Arrays.asList(
+        "-b",
+        String.valueOf(bandIndex),
+        "-srcwin",
+        String.valueOf(xOffset),
+        String.valueOf(yOffset),
+        String.valueOf(sampleWidth),
+        String.valueOf(sampleHeight),
+        "-co",
+        "TILED=YES",
+        "-co",
+        "BLOCKXSIZE=" + CogFactory.TILE_SIZE,
+        "-co",
+        "BLOCKYSIZE=" + CogFactory.TILE_SIZE);
+
+    double baselineSeconds = 0;
+    long headerSize = 0;
+    try {
+      Trial baseline = trial(inputPath, windowOptions, Arrays.asList("-co", "COMPRESS=NONE"),
+          trialFolder, "NONE");
+      baselineSeconds = baseline.seconds;
+      headerSize = Math.max(baseline.size - rawSize, 0);
+    } catch (IOException | RuntimeException e) {
+      log.warn("Uncompressed baseline trial failed, timing whole trials: {}", e.getMessage());
+    }
+
+    List<Compression> compressions = new LinkedList<>();
+    List<CompressionTrial> trials = new LinkedList<>();
+
+    for (Compression candidate : CANDIDATES) {
+      try {
+        Trial trial = trial(inputPath, windowOptions, candidate.creationOptions(predictor),
+            trialFolder, candidate.codec().name());
+        double seconds = Math.max(trial.seconds - baselineSeconds, MIN_SECONDS);
+        double ratio = rawSize / (double) Math.max(trial.size - headerSize, 1);
+
+        compressions.add(candidate);
+        trials.add(new CompressionTrial(candidate.toString(), ratio, seconds));
+      } catch (IOException | RuntimeException e) {
+        log.warn("Compression {} is not available, skipping it: {}", candidate, e.getMessage());
+      }
+    }
+
+    if (trials.isEmpty()) {
+      return new CompressionChoice(band, Compression.DEFLATE.toString(), trials);
+    }
+
+    double minSeconds = trials.stream().mapToDouble(CompressionTrial::getSeconds).min().getAsDouble();
+    double maxRatio = trials.stream().mapToDouble(CompressionTrial::getRatio).max().getAsDouble();
+
+    int best = 0;
+    double bestScore = Double.MAX_VALUE;
+    for (int i = 0; i < trials.size(); i++) {
+      CompressionTrial trial = trials.get(i);
+      double relativeTime = trial.getSeconds() / minSeconds;
+      double relativeSize = maxRatio / trial.getRatio();
+      double score = speedWeight * relativeTime + (1 - speedWeight) * relativeSize;
+
+      if (score < bestScore) {
+        bestScore = score;
+        best = i;
+      }
+    }
+
+    return new CompressionChoice(band, compressions.get(best).toString(), trials);
+  }
+
+  /** Encodes the window into a trial file and returns the time it took and the file size. */
+  private static Trial trial(Path inputPath, List<String> windowOptions,
+      List<String> compressionOptions, Path trialFolder, String name) throws IOException {
+    List<String> options = new LinkedList<>(windowOptions);
+    options.addAll(compressionOptions);
+    Path trialFile = trialFolder.resolve(String.format("%s_trial_%s_%d.tiff",
+        inputPath.getFileName(), name, System.nanoTime()));
+
+    try {
+      long start = System.nanoTime();
+      Gdal.backend().translate(inputPath, trialFile, options, Collections.emptyMap());
+      return new Trial((System.nanoTime() - start) / 1e9, Files.size(trialFile));
+    } finally {
+      deleteQuietly(trialFile);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Failed to delete {}", file, e);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class Trial {
+
+    private final double seconds;
+    private final long size;
+  }
+}
@@ -180,8 +180,10 @@ public class ByocIngestor {
 
           log.trace("Creating COG out of image {} at index {}", inputFile.path(), bandMap.index());
           Path cogFile = cogFactory.createCog(tile, inputFile.path(), bandMap);
+          Path maskFile = CogFactory.maskFile(cogFile);
 
-          cogSources.add(new CogSource(inputFile.path(), bandMap, cogFile));
+          cogSources.add(new CogSource(
+              inputFile.path(), bandMap, cogFile, Files.exists(maskFile) ? maskFile : null));
         }
       }
 
@@ -190,39 +192,45 @@ public class ByocIngestor {
           .collect(Collectors.toList());
 
       validateTiffs(cogPaths);
+      validateCogLayout(cogPaths);
 
-      CoverageCalculator coverageCalculator = null;
-      if (tracingConfig != null && tile.coverage() == null) {
-        coverageCalculator = new CoverageCalculator(tracingConfig);
-      }
-
-      for (CogSource cogSource : cogSources) {
-        Path inputFile = cogSource.inputPath();
-        BandMap bandMap = cogSource.bandMap();
-        Path cogPath = cogSource.cogPath();
+      CoverageCalculator coverageCalculator = tracingConfig != null && tile.coverage() == null
+          ? new CoverageCalculator(tracingConfig)
+          : null;
 
+      try (coverageCalculator) {
         if (coverageCalculator != null) {
-          log.trace("Tracing coverage in image {} at index {}", inputFile, bandMap.index());
-          coverageCalculator.addImage(cogPath);
+          log.trace("Tracing coverage in {} images", cogPaths.size());
+          coverageCalculator.addImages(cogPaths, cogSources.stream()
+              .map(CogSource::maskPath)
+              .collect(Collectors.toList()));
         }
 
-        String s3Key = fullTilePath.replace(BAND_PLACEHOLDER, bandMap.name());
-        log.trace("Uploading image {} at index {} to s3 {}", inputFile, bandMap.index(), s3Key);
+        for (CogSource cogSource : cogSources) {
+          Path inputFile = cogSource.inputPath();
+          BandMap bandMap = cogSource.bandMap();
+          Path cogPath = cogSource.cogPath();
+
+          if (cogSource.maskPath() != null) {
+            Files.delete(cogSource.maskPath());
+          }
+
+          String s3Key = fullTilePath.replace(BAND_PLACEHOLDER, bandMap.name());
+          log.trace("Uploading image {} at index {} to s3 {}", inputFile, bandMap.index(), s3Key);
 
-        objectStorageClient.store(collection.getS3Bucket(), s3Key, cogPath);
+          objectStorageClient.store(collection.getS3Bucket(), s3Key, cogPath);
 
-        if (deleteGeneratedCogs) {
-          Files.delete(cogPath);
+          if (deleteGeneratedCogs) {
+            Files.delete(cogPath);
+          }
         }
-      }
 
-      if (coverageCalculator != null) {
-        return JtsUtils.toGeoJson(coverageCalculator.getCoverage());
-      } else if (tile.coverage() != null) {
-        return tile.coverage();
+        if (coverageCalculator != null) {
+          return JtsUtils.toGeoJson(coverageCalculator.getCoverage());
+        }
       }
 
-      return null;
+      return tile.coverage();
     }
 
     private List<Path> getTiffs(Tile tile) {
@@ -239,6 +247,14 @@ public class ByocIngestor {
         throw new TileInvalid(tile, errors);
       }
     }
+
+    private void validateCogLayout(List<Path> paths) throws IOException {
+      Collection<String> errors = TileValidation.validateCogLayout(paths);
+
+      if (!errors.isEmpty()) {
+        throw new TileInvalid(tile, errors);
+      }
+    }
   }
 
   @Value
@@ -270,6 +286,7 @@ public class ByocIngestor {
     private int[] overviewLevels;
     private Integer minSize;
     private String resampling;
+    private Compression compression;
 
     public BandMap setOverviewLevels(int[] levels) {
       Objects.requireNonNull(levels);
@@ -286,6 +303,11 @@ public class ByocIngestor {
       this.resampling = resampling;
       return this;
     }
+
+    public BandMap setCompression(Compression compression) {
+      this.compression = compression;
+      return this;
+    }
   }
 
   @Value
@@ -295,6 +317,7 @@ public class ByocIngestor {
     Path inputPath;
     BandMap bandMap;
     Path cogPath;
+    Path maskPath;
   }
 
   @Builder
@@ -0,0 +1,73 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Runs GDAL command line utilities in a subprocess.
+ */
+public class CliGdalBackend implements GdalBackend {
+
+  @Override
+  public String version() {
+    return ProcessUtil.runCommand("gdalinfo", "--version");
+  }
+
+  @Override
+  public GdalInfo info(Path file) {
+    ProcessBuilder pb = new ProcessBuilder("gdalinfo", "-json", file.toString());
+    String output = ProcessUtil.runCommand(pb);
+
+    try {
+      return new ObjectMapper().readValue(output, GdalInfo.class);
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException("Failed to parse gdalinfo output for " + file, e);
+    }
+  }
+
+  @Override
+  public void translate(Path input, Path output, List<String> options, Map<String, String> config) {
+    List<String> command = new LinkedList<>();
+    command.add("gdal_translate");
+    addConfig(command, config);
+    command.addAll(options);
+    command.addAll(
+        Arrays.asList(input.toAbsolutePath().toString(), output.toAbsolutePath().toString()));
+
+    ProcessUtil.runCommand(command.toArray(new String[0]));
+  }
+
+  @Override
+  public void addOverviews(
+      Path file, String resampling, int[] levels, int minSize, Map<String, String> config) {
+    List<String> command = new LinkedList<>(Arrays.asList("gdaladdo", "-r", resampling));
+    addConfig(command, config);
+    command.add(file.toAbsolutePath().toString());
+
+    if (levels != null) {
+      for (int level : levels) {
+        command.add(String.valueOf(level));
+      }
+    } else {
+      command.addAll(Arrays.asList("-minsize", String.valueOf(minSize)));
+    }
+
+    ProcessUtil.runCommand(command.toArray(new String[0]));
+  }
+
+  @Override
+  public void checksum(Path file) {
+    String output = ProcessUtil.runCommand("gdalinfo", "-checksum", file.toString());
+
+    if (output.toLowerCase().contains("checksum value could not be computed")) {
+      throw new RuntimeException("Checksum failed to be computed for file: " + file);
+    }
+  }
+
+  private static void addConfig(List<String> command, Map<String, String> config) {
+    config.forEach((key, value) -> command.addAll(Arrays.asList("--config", key, value)));
+  }
+}
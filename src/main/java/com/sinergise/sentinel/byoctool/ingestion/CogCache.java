@@ -0,0 +1,186 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import lombok.Value;
+import lombok.experimental.Accessors;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local on-disk cache of generated COGs. Entries are keyed by the content hash of the input file
+ * and the options the COG was created with, so they can be reused across runs and collections.
+ * Least recently used entries are evicted when the cache grows over its size limit.
+ */
+@Log4j2
+public class CogCache {
+
+  private static final String COG_SUFFIX = ".tiff";
+
+  private final Path folder;
+  private final long maxSizeInBytes;
+
+  private final Map<FileStamp, String> contentHashes = new ConcurrentHashMap<>();
+
+  public CogCache(Path folder, long maxSizeInBytes) throws IOException {
+    this.folder = Files.createDirectories(folder);
+    this.maxSizeInBytes = maxSizeInBytes;
+  }
+
+  String key(Path inputFile, String options) throws IOException {
+    MessageDigest digest = newDigest();
+    digest.update(contentHash(inputFile).getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(options.getBytes(StandardCharsets.UTF_8));
+
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  boolean restore(String key, Path target) throws IOException {
+    Path cached = cachedFile(key);
+
+    try {
+      Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+      Files.deleteIfExists(target);
+      linkOrCopy(cached, target);
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+
+    log.debug("Reusing cached COG {} for {}", cached, target);
+
+    return true;
+  }
+
+  void store(String key, Path cog) throws IOException {
+    Path cached = cachedFile(key);
+    Path temporary = folder.resolve(key + "_" + System.nanoTime() + ".tmp");
+
+    try {
+      linkOrCopy(cog, temporary);
+      Files.move(temporary, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+
+    evict();
+  }
+
+  private synchronized void evict() throws IOException {
+    List<CachedCog> entries;
+    try (Stream<Path> files = Files.list(folder)) {
+      entries = files
+          .filter(file -> file.getFileName().toString().endsWith(COG_SUFFIX))
+          .map(CogCache::readEntry)
+          .filter(Objects::nonNull)
+          .sorted(Comparator.comparing(CachedCog::lastAccess))
+          .collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    long totalSize = entries.stream().mapToLong(CachedCog::size).sum();
+
+    for (CachedCog entry : entries) {
+      if (totalSize <= maxSizeInBytes) {
+        break;
+      }
+
+      log.debug("Evicting cached COG {}", entry.path());
+      if (Files.deleteIfExists(entry.path())) {
+        totalSize -= entry.size();
+      }
+    }
+  }
+
+  private String contentHash(Path file) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    FileStamp stamp = new FileStamp(
+        file.toAbsolutePath().normalize(), attributes.size(), attributes.lastModifiedTime());
+
+    String hash = contentHashes.get(stamp);
+    if (hash == null) {
+      hash = hashContent(file);
+      contentHashes.put(stamp, hash);
+    }
+
+    return hash;
+  }
+
+  private static String hashContent(Path file) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[1024 * 1024];
+
+    try (InputStream is = Files.newInputStream(file)) {
+      int bytesRead;
+      while ((bytesRead = is.read(buffer)) > 0) {
+        digest.update(buffer, 0, bytesRead);
+      }
+    }
+
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static void linkOrCopy(Path source, Path target) throws IOException {
+    try {
+      Files.createLink(target, source);
+    } catch (IOException | UnsupportedOperationException e) {
+      Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static CachedCog readEntry(Path file) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return new CachedCog(file, attributes.size(), attributes.lastModifiedTime());
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Path cachedFile(String key) {
+    return folder.resolve(key + COG_SUFFIX);
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Value
+  private static class FileStamp {
+
+    Path path;
+    long size;
+    FileTime lastModified;
+  }
+
+  @Value
+  @Accessors(fluent = true)
+  private static class CachedCog {
+
+    Path path;
+    long size;
+    FileTime lastAccess;
+  }
+}
@@ -1,38 +1,78 @@
 package com.sinergise.sentinel.byoctool.ingestion;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sinergise.sentinel.byoctool.ingestion.ByocIngestor.BandMap;
 import com.sinergise.sentinel.byoctool.ingestion.ByocIngestor.Tile;
+import com.sinergise.sentinel.byoctool.ingestion.Compression.Codec;
 import com.sinergise.sentinel.byoctool.ingestion.GdalInfo.Band;
-import com.sinergise.sentinel.byoctool.tiff.TiffCompoundDirectory;
+import com.sinergise.sentinel.byoctool.ingestion.RunReport.CompressionChoice;
 import com.sinergise.sentinel.byoctool.tiff.TiffDirectory.SampleFormat;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadataRegistry;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import lombok.extern.log4j.Log4j2;
 
-import javax.imageio.ImageIO;
-import javax.imageio.stream.ImageInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+@Log4j2
 @Setter
 @Accessors(chain = true)
 public class CogFactory {
 
+  // bump when the GDAL commands change, so previously cached COGs are not reused
+  private static final int CACHE_VERSION = 2;
+
+  static final int TILE_SIZE = 1024;
+
+  private static final Map<String, String> OVERVIEW_BLOCK_SIZE_CONFIG =
+      Collections.singletonMap("GDAL_TIFF_OVR_BLOCKSIZE", String.valueOf(TILE_SIZE));
+
   private Integer noDataValue;
 
   private Boolean useCompressionPredictor = true;
 
   private Path processingFolder;
 
+  private CogCache cogCache;
+
+  private double autoCompressionSpeedWeight = 0.25;
+
+  private RunReport runReport;
+
+  /**
+   * Whether GDAL writes a mask of valid pixels next to each COG while tiling it, see
+   * {@link #maskFile(Path)}.
+   */
+  private boolean createMasks;
+
+  private final Map<String, Compression> autoCompressions = new ConcurrentHashMap<>();
+
   Path createCog(Tile tile, Path inputFile, BandMap bandMap) throws IOException {
     Path intermediateFile = getIntermediateFile(tile, inputFile);
     Path outputFile = getOutputFile(tile, inputFile, intermediateFile, bandMap);
 
+    // a mask left by an earlier run would not match a COG restored from the cache
+    Files.deleteIfExists(maskFile(outputFile));
+
+    // resolved before the cache lookup, so a cached COG has the codec this run would choose
+    Compression compression = resolveCompression(inputFile, bandMap, intermediateFile.getParent());
+
+    String cacheKey = null;
+    if (cogCache != null) {
+      cacheKey = cogCache.key(inputFile, getCacheOptions(bandMap, compression));
+
+      if (cogCache.restore(cacheKey, outputFile)) {
+        return outputFile;
+      }
+    }
+
     try {
-      GdalInfo gdalInfo = getGdalInfo(inputFile);
+      GdalInfo gdalInfo = Gdal.backend().info(inputFile);
       String dataType =
           gdalInfo.getBands().stream()
               .filter(band -> bandMap.index() == band.getBand())
@@ -42,15 +82,28 @@ public class CogFactory {
 
       createGeoTiff(inputFile, bandMap.index(), noDataValue, dataType, intermediateFile);
       addOverviews(intermediateFile, bandMap);
-      addTiling(intermediateFile, useCompressionPredictor, outputFile);
+      addTiling(intermediateFile, compression, outputFile);
       runChecksum(outputFile);
 
+      if (cogCache != null) {
+        cogCache.store(cacheKey, outputFile);
+      }
+
       return outputFile;
     } finally {
       Files.deleteIfExists(intermediateFile);
     }
   }
 
+  /**
+   * Returns the file in which GDAL writes the mask of valid pixels of the COG, as with
+   * {@code gdal_translate -mask}. Pixels of the mask are 255 where the COG has data and 0 where it
+   * has no-data. The file only exists if masks are created, and is not part of the COG.
+   */
+  public static Path maskFile(Path cogFile) {
+    return cogFile.resolveSibling(cogFile.getFileName() + ".msk");
+  }
+
   private Path getIntermediateFile(Tile tile, Path inputFile) {
     final Path folder;
     final String nameStart;
@@ -87,6 +140,18 @@ public class CogFactory {
         .resolve(String.format("%s_%s.tiff", nameStart, bandMap.name()));
   }
 
+  private String getCacheOptions(BandMap bandMap, Compression compression) {
+    return String.join(";",
+        "version=" + CACHE_VERSION,
+        "band=" + bandMap.index(),
+        "noData=" + noDataValue,
+        "predictor=" + useCompressionPredictor,
+        "resampling=" + Optional.ofNullable(bandMap.resampling()).orElse("average"),
+        "overviewLevels=" + Arrays.toString(bandMap.overviewLevels()),
+        "minSize=" + bandMap.minSize(),
+        "compression=" + compression);
+  }
+
   private static String stripSuffix(String fileName) {
     return fileName.substring(0, fileName.lastIndexOf('.'));
   }
@@ -95,112 +160,129 @@ public class CogFactory {
     return tile.path().replace('/', '_');
   }
 
-  private GdalInfo getGdalInfo(Path inputFile) throws JsonProcessingException {
-    ProcessBuilder pb = new ProcessBuilder("gdalinfo", "-json", inputFile.toString());
-    String output = ProcessUtil.runCommand(pb);
-    return new ObjectMapper().readValue(output, GdalInfo.class);
-  }
-
   private static void createGeoTiff(
       Path inputPath, int bandNumber, Integer noDataValue, String dataType, Path outPath) {
-    List<String> command =
+    List<String> options =
         new LinkedList<>(
-            Arrays.asList("gdal_translate", "-of", "GTIFF", "-co", "BIGTIFF=YES", "-b", String.valueOf(bandNumber)));
+            Arrays.asList("-of", "GTIFF", "-co", "BIGTIFF=YES", "-b", String.valueOf(bandNumber)));
 
     if (noDataValue != null) {
-      command.addAll(Arrays.asList("-a_nodata", String.valueOf(noDataValue)));
+      options.addAll(Arrays.asList("-a_nodata", String.valueOf(noDataValue)));
     }
 
     if (dataType != null) {
-      command.addAll(Arrays.asList("-ot", dataType));
+      options.addAll(Arrays.asList("-ot", dataType));
     }
 
-    command.addAll(
-        Arrays.asList(inputPath.toAbsolutePath().toString(), outPath.toAbsolutePath().toString()));
-
-    ProcessUtil.runCommand(command.toArray(new String[0]));
+    Gdal.backend().translate(inputPath, outPath, options, Collections.emptyMap());
   }
 
   private static void addOverviews(Path inputPath, BandMap bandMap) {
     String resampling = Optional.ofNullable(bandMap.resampling())
         .orElse("average");
+    int minSize = Optional.ofNullable(bandMap.minSize()).orElse(512);
 
-    List<String> cmd =
-        new LinkedList<>(
-            Arrays.asList(
-                "gdaladdo",
-                "-r",
-                resampling,
-                "--config",
-                "GDAL_TIFF_OVR_BLOCKSIZE",
-                "1024",
-                inputPath.toAbsolutePath().toString()));
-
-    if (bandMap.overviewLevels() != null) {
-      for (double level : bandMap.overviewLevels()) {
-        cmd.add(String.valueOf(level));
-      }
-    } else {
-      Integer minSize = Optional.ofNullable(bandMap.minSize()).orElse(512);
-      cmd.addAll(Arrays.asList("-minsize", minSize.toString()));
-    }
-
-    ProcessUtil.runCommand(cmd.toArray(new String[0]));
+    Gdal.backend().addOverviews(
+        inputPath, resampling, bandMap.overviewLevels(), minSize, OVERVIEW_BLOCK_SIZE_CONFIG);
   }
 
-  private static void addTiling(Path inputPath, boolean compressionPredictor, Path outputPath)
+  private void addTiling(Path inputPath, Compression compression, Path outputPath)
       throws IOException {
-    List<String> command =
+    List<String> options =
         new LinkedList<>(
             Arrays.asList(
-                "gdal_translate",
                 "-co",
                 "TILED=YES",
                 "-co",
                 "COPY_SRC_OVERVIEWS=YES",
-                "--config",
-                "GDAL_TIFF_OVR_BLOCKSIZE",
-                "1024",
-                "-co",
-                "BLOCKXSIZE=1024",
                 "-co",
-                "BLOCKYSIZE=1024",
+                "BLOCKXSIZE=" + TILE_SIZE,
                 "-co",
-                "COMPRESS=DEFLATE"));
+                "BLOCKYSIZE=" + TILE_SIZE));
 
-    if (compressionPredictor) {
-      try (ImageInputStream imageStream = ImageIO.createImageInputStream(inputPath.toFile())) {
-        TiffCompoundDirectory directory = new TiffCompoundDirectory(imageStream);
-        Integer predictor = getPredictor(directory.sampleFormat());
+    Integer predictor = useCompressionPredictor
+        ? getPredictor(TiffMetadataRegistry.get(inputPath).sampleFormat())
+        : null;
 
-        if (predictor != null) {
-          command.addAll(Arrays.asList("-co", "PREDICTOR=" + predictor));
-        }
-      }
-    }
+    options.addAll(compression.creationOptions(predictor));
 
-    command.addAll(
-        Arrays.asList(
-            inputPath.toAbsolutePath().toString(), outputPath.toAbsolutePath().toString()));
+    Map<String, String> config = OVERVIEW_BLOCK_SIZE_CONFIG;
+    if (createMasks) {
+      // the mask of the band, derived from its no-data value, while its pixels are copied anyway;
+      // "-mask 1" would copy the pixel values of the band instead
+      options.addAll(Arrays.asList("-mask", "mask,1"));
+      config = new HashMap<>(OVERVIEW_BLOCK_SIZE_CONFIG);
+      config.put("GDAL_TIFF_INTERNAL_MASK", "NO");
+    }
 
-    List<String> commandStdTiff = new ArrayList<>(command);
-    List<String> commandBigTiff = new ArrayList<>(command);
-    commandStdTiff.addAll(Arrays.asList("-co", "BIGTIFF=NO"));
-    commandBigTiff.addAll(Arrays.asList("-co", "BIGTIFF=YES"));
+    List<String> optionsStdTiff = new ArrayList<>(options);
+    List<String> optionsBigTiff = new ArrayList<>(options);
+    optionsStdTiff.addAll(Arrays.asList("-co", "BIGTIFF=NO"));
+    optionsBigTiff.addAll(Arrays.asList("-co", "BIGTIFF=YES"));
 
     try {
-      ProcessUtil.runCommand(commandStdTiff.toArray(new String[0]));
+      Gdal.backend().translate(inputPath, outputPath, optionsStdTiff, config);
     } catch (RuntimeException e) {
-      ProcessUtil.runCommand(commandBigTiff.toArray(new String[0]));
+      if (!needsBigTiff(e)) {
+        throw e;
+      }
+      Gdal.backend().translate(inputPath, outputPath, optionsBigTiff, config);
     }
   }
 
-  static void runChecksum(Path outputFile) {
-    String output = ProcessUtil.runCommand("gdalinfo", "-checksum", outputFile.toString());
+  /**
+   * Recognizes the errors GDAL reports when a file does not fit into a classic TIFF, either up
+   * front or once the 4 GB offset limit is hit while writing.
+   */
+  static boolean needsBigTiff(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      String message = t.getMessage();
+      if (message != null
+          && (message.contains("BigTIFF is necessary")
+              || message.contains("Maximum TIFF file size exceeded"))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Compression getCompression(BandMap bandMap) {
+    return Optional.ofNullable(bandMap.compression()).orElse(Compression.DEFLATE);
+  }
 
-    if (output.toLowerCase().contains("checksum value could not be computed")) {
-      throw new RuntimeException("Checksum failed to be computed for file: " + outputFile);
+  /**
+   * Returns the compression of the band, choosing the codec from a sample of the band in the input
+   * file the first time the band is seen if the compression is automatic. Trial files are written
+   * to the given folder.
+   */
+  private Compression resolveCompression(Path inputPath, BandMap bandMap, Path trialFolder) {
+    Compression compression = getCompression(bandMap);
+    if (compression.codec() != Codec.AUTO) {
+      return compression;
     }
+
+    return autoCompressions.computeIfAbsent(bandMap.name(), band -> {
+      TiffMetadata metadata;
+      try {
+        metadata = TiffMetadataRegistry.get(inputPath);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      Integer predictor = useCompressionPredictor ? getPredictor(metadata.sampleFormat()) : null;
+      CompressionChoice choice = new AutoCompression(autoCompressionSpeedWeight)
+          .choose(inputPath, bandMap.index(), metadata, predictor, band, trialFolder);
+      log.info("Chose compression {} for band {}.", choice.getChosen(), band);
+
+      if (runReport != null) {
+        runReport.addCompressionChoice(choice);
+      }
+
+      return Compression.parse(choice.getChosen());
+    });
+  }
+
+  static void runChecksum(Path outputFile) {
+    Gdal.backend().checksum(outputFile);
   }
 
   static Integer getPredictor(int sampleFormat) {
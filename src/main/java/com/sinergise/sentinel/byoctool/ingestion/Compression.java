@@ -0,0 +1,103 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import lombok.Value;
+import lombok.experimental.Accessors;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+@Value
+@Accessors(fluent = true)
+public class Compression {
+
+  public static final Compression DEFLATE = new Compression(Codec.DEFLATE, null);
+  public static final Compression AUTO = new Compression(Codec.AUTO, null);
+
+  Codec codec;
+  Double parameter;
+
+  public static Compression parse(String value) {
+    String[] parts = value.trim().split(":");
+
+    if (parts.length > 2) {
+      throw new IllegalArgumentException(invalidValue(value));
+    }
+
+    final Codec codec;
+    try {
+      codec = Codec.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(invalidValue(value));
+    }
+
+    if (parts.length == 1) {
+      return new Compression(codec, null);
+    }
+
+    if (codec == Codec.AUTO || codec == Codec.LZW) {
+      throw new IllegalArgumentException(
+          String.format("Compression %s does not take a parameter.", codec));
+    }
+
+    try {
+      return new Compression(codec, Double.parseDouble(parts[1].trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(invalidValue(value));
+    }
+  }
+
+  private static String invalidValue(String value) {
+    return String.format(
+        "Invalid compression \"%s\". Expected one of %s, optionally followed by :<parameter>.",
+        value, Arrays.toString(Codec.values()));
+  }
+
+  boolean supportsPredictor() {
+    return codec != Codec.LERC;
+  }
+
+  List<String> creationOptions(Integer predictor) {
+    if (codec == Codec.AUTO) {
+      throw new IllegalStateException("Automatic compression has to be resolved to a codec first.");
+    }
+
+    List<String> options = new LinkedList<>(Arrays.asList("-co", "COMPRESS=" + codec));
+
+    if (parameter != null) {
+      switch (codec) {
+        case DEFLATE:
+          options.addAll(Arrays.asList("-co", "ZLEVEL=" + parameter.intValue()));
+          break;
+        case ZSTD:
+          options.addAll(Arrays.asList("-co", "ZSTD_LEVEL=" + parameter.intValue()));
+          break;
+        case LERC:
+          options.addAll(Arrays.asList("-co", "MAX_Z_ERROR=" + parameter));
+          break;
+        default:
+          break;
+      }
+    }
+
+    if (predictor != null && supportsPredictor()) {
+      options.addAll(Arrays.asList("-co", "PREDICTOR=" + predictor));
+    }
+
+    return options;
+  }
+
+  @Override
+  public String toString() {
+    return parameter == null ? codec.name() : codec.name() + ":" + parameter;
+  }
+
+  public enum Codec {
+    DEFLATE,
+    ZSTD,
+    LZW,
+    LERC,
+    AUTO
+  }
+}
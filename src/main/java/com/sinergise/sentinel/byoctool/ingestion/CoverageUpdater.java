@@ -0,0 +1,280 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import com.sinergise.sentinel.byoctool.cli.CoverageTracingConfig;
+import com.sinergise.sentinel.byoctool.coverage.CoverageCalculator;
+import com.sinergise.sentinel.byoctool.ingestion.IngestionException.CollectionNotFound;
+import com.sinergise.sentinel.byoctool.ingestion.storage.ObjectStorageClient;
+import com.sinergise.sentinel.byoctool.sentinelhub.ByocClient;
+import com.sinergise.sentinel.byoctool.sentinelhub.models.ByocCollection;
+import com.sinergise.sentinel.byoctool.sentinelhub.models.ByocTile;
+import com.sinergise.sentinel.byoctool.utils.JtsUtils;
+import lombok.*;
+import lombok.experimental.Accessors;
+import lombok.extern.log4j.Log4j2;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+import static com.sinergise.sentinel.byoctool.sentinelhub.models.ByocTile.BAND_PLACEHOLDER;
+
+/**
+ * Traces coverage of all tiles of a collection from their objects in the bucket and updates the
+ * tiles. Tiles are traced concurrently on a pool of the given number of threads, while tiles are
+ * read from the collection only as fast as they are traced.
+ *
+ * <p>Traced tiles are updated in batches, after which the versions of their objects (see
+ * {@link ObjectStorageClient#objectVersion}) are appended to the checkpoint file, if set. Tiles
+ * whose objects have the same versions as in the checkpoint file are skipped, so an interrupted
+ * run continues where it stopped, and a later run only traces tiles which changed.
+ */
+@Log4j2
+@RequiredArgsConstructor
+@Accessors(chain = true)
+public class CoverageUpdater {
+
+  private final ByocClient byocClient;
+  private final ObjectStorageClient objectStorageClient;
+
+  @Setter
+  private CoverageTracingConfig tracingConfig = new CoverageTracingConfig();
+
+  @Setter
+  private int threads = 2;
+
+  /** Number of traced tiles after which they are updated and saved to the checkpoint file. */
+  @Setter
+  private int checkpointInterval = 100;
+
+  @Setter
+  private Path checkpointFile;
+
+  @Setter
+  private boolean dryRun;
+
+  /** Called with the coverage of every traced tile, before it is updated. */
+  @Setter
+  private BiConsumer<ByocTile, Geometry> coverageListener;
+
+  public UpdateResult update(String collectionId) {
+    ByocCollection collection = byocClient.getCollection(collectionId)
+        .orElseThrow(() -> new CollectionNotFound(collectionId));
+
+    if (collection.getAdditionalData() == null
+        || collection.getAdditionalData().getBands() == null
+        || collection.getBands().isEmpty()) {
+      throw new IngestionException(
+          String.format("Collection %s has no bands to trace coverage of.", collectionId));
+    }
+
+    Map<String, String> checkpoint = readCheckpoint();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CompletionService<TracedTile> completionService = new ExecutorCompletionService<>(executor);
+    List<TracedTile> batch = new ArrayList<>();
+    UpdateResult result = new UpdateResult();
+
+    try {
+      Iterator<ByocTile> tiles = byocClient.getTileIterator(collectionId);
+      int pending = 0;
+
+      while (tiles.hasNext() || pending > 0) {
+        // a few tiles are queued for each thread, the rest are not fetched yet
+        if (tiles.hasNext() && pending < 2 * threads) {
+          ByocTile tile = tiles.next();
+          completionService.submit(() -> trace(collection, tile, checkpoint.get(tile.getId())));
+          pending++;
+          continue;
+        }
+
+        TracedTile traced = take(completionService, executor);
+        pending--;
+
+        if (traced == null) {
+          result.failed++;
+        } else if (traced.coverage == null) {
+          result.skipped++;
+        } else {
+          batch.add(traced);
+        }
+
+        if (batch.size() >= checkpointInterval) {
+          flush(collectionId, batch, result);
+        }
+      }
+
+      flush(collectionId, batch, result);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    log.info("Updated coverage of {} tiles, skipped {} unchanged tiles, {} tiles failed.",
+        result.updated, result.skipped, result.failed);
+
+    return result;
+  }
+
+  private static TracedTile take(
+      CompletionService<TracedTile> completionService, ExecutorService executor) {
+    try {
+      return completionService.take().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      executor.shutdownNow();
+      throw new RuntimeException("Interrupted while tracing coverage.", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Traces all bands of the tile, unless the versions of their objects are the checkpointed ones,
+   * in which case the coverage is null. Returns null if tracing failed.
+   */
+  private TracedTile trace(ByocCollection collection, ByocTile tile, String checkpointedVersions) {
+    try {
+      return traceBands(collection, tile, checkpointedVersions);
+    } catch (Exception e) {
+      log.error("Failed to trace coverage of tile {}.", tile.getId(), e);
+      return null;
+    }
+  }
+
+  private TracedTile traceBands(
+      ByocCollection collection, ByocTile tile, String checkpointedVersions) throws IOException {
+    List<String> bandPaths = new ArrayList<>();
+    for (String band : new TreeSet<>(collection.getBands())) {
+      bandPaths.add(tile.getPath().replace(BAND_PLACEHOLDER, band));
+    }
+
+    String versions = versions(collection.getS3Bucket(), bandPaths);
+    if (versions != null && versions.equals(checkpointedVersions)) {
+      log.debug("Skipping tile {} because its objects have not changed.", tile.getId());
+      return new TracedTile(tile, versions, null);
+    }
+
+    try (CoverageCalculator coverageCalculator = new CoverageCalculator(tracingConfig)) {
+      for (String bandPath : bandPaths) {
+        try (InputStream is =
+            objectStorageClient.getObjectAsStream(collection.getS3Bucket(), bandPath)) {
+          coverageCalculator.addImage(is);
+        }
+      }
+
+      return new TracedTile(tile, versions, coverageCalculator.getCoverage());
+    }
+  }
+
+  /** Returns the versions of the objects, or null if any of them is not known. */
+  private String versions(String bucketName, List<String> keys) {
+    List<String> versions = new ArrayList<>();
+
+    for (String key : keys) {
+      String version = objectStorageClient.objectVersion(bucketName, key);
+      if (version == null) {
+        return null;
+      }
+      versions.add(version);
+    }
+
+    return String.join(",", versions);
+  }
+
+  private void flush(String collectionId, List<TracedTile> batch, UpdateResult result) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    List<TracedTile> updated = new ArrayList<>();
+
+    for (TracedTile traced : batch) {
+      if (coverageListener != null) {
+        coverageListener.accept(traced.tile, traced.coverage);
+      }
+
+      if (dryRun) {
+        continue;
+      }
+
+      traced.tile.setCoverGeometry(JtsUtils.toGeoJson(traced.coverage));
+
+      try {
+        byocClient.updateTile(collectionId, traced.tile);
+        updated.add(traced);
+      } catch (RuntimeException e) {
+        log.error("Failed to update tile {}.", traced.tile.getId(), e);
+        result.failed++;
+      }
+    }
+
+    result.updated += updated.size();
+    writeCheckpoint(updated);
+    batch.clear();
+  }
+
+  private Map<String, String> readCheckpoint() {
+    Map<String, String> checkpoint = new HashMap<>();
+
+    if (checkpointFile == null || !Files.exists(checkpointFile)) {
+      return checkpoint;
+    }
+
+    try {
+      // later lines are of later runs
+      for (String line : Files.readAllLines(checkpointFile, StandardCharsets.UTF_8)) {
+        String[] fields = line.split("\t", 2);
+        if (fields.length == 2) {
+          checkpoint.put(fields[0], fields[1]);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read checkpoint file " + checkpointFile, e);
+    }
+
+    log.info("Read versions of {} tiles from checkpoint file {}.", checkpoint.size(), checkpointFile);
+
+    return checkpoint;
+  }
+
+  private void writeCheckpoint(List<TracedTile> tiles) {
+    if (checkpointFile == null || tiles.isEmpty()) {
+      return;
+    }
+
+    try (BufferedWriter writer = Files.newBufferedWriter(checkpointFile, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+      for (TracedTile traced : tiles) {
+        if (traced.versions != null) {
+          writer.write(traced.tile.getId() + "\t" + traced.versions);
+          writer.newLine();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write checkpoint file " + checkpointFile, e);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class TracedTile {
+
+    private final ByocTile tile;
+    private final String versions;
+    private final Geometry coverage;
+  }
+
+  @Getter
+  public static class UpdateResult {
+
+    private int updated;
+    private int skipped;
+    private int failed;
+  }
+}
@@ -0,0 +1,38 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Holds the GDAL backend used by COG creation and tile validation. The command line backend is
+ * used unless the in-process backend is requested and can be loaded.
+ */
+@Log4j2
+public class Gdal {
+
+  private static volatile GdalBackend backend = new CliGdalBackend();
+
+  public static GdalBackend backend() {
+    return backend;
+  }
+
+  public static void setBackend(GdalBackend backend) {
+    Gdal.backend = backend;
+  }
+
+  /**
+   * Switches to the in-process backend bound to the given GDAL library. Falls back to the command
+   * line backend if the library cannot be loaded or the JVM was started without
+   * {@code --enable-preview}, which the foreign function API requires on Java 21.
+   */
+  public static GdalBackend useNativeBackend(String library) {
+    try {
+      backend = NativeGdalBackend.load(library);
+    } catch (LinkageError | RuntimeException e) {
+      log.warn("In-process GDAL is not available, falling back to GDAL command line utilities: {}",
+          e.toString());
+      backend = new CliGdalBackend();
+    }
+
+    return backend;
+  }
+}
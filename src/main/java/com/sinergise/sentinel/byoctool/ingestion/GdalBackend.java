@@ -0,0 +1,31 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GDAL operations used during ingestion. See {@link Gdal} for selecting the implementation.
+ */
+public interface GdalBackend {
+
+  String version();
+
+  GdalInfo info(Path file);
+
+  /**
+   * Runs gdal_translate with the given command line options, for example {@code -co TILED=YES}.
+   */
+  void translate(Path input, Path output, List<String> options, Map<String, String> config);
+
+  /**
+   * Adds internal overviews to the file, like gdaladdo. If no levels are given, levels are
+   * computed so that the smallest overview is not larger than {@code minSize}.
+   */
+  void addOverviews(Path file, String resampling, int[] levels, int minSize, Map<String, String> config);
+
+  /**
+   * Decodes all pixels of the file and fails if any band could not be read.
+   */
+  void checksum(Path file);
+}
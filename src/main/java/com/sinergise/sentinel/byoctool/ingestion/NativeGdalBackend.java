@@ -0,0 +1,356 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * Calls the installed GDAL library in-process through the foreign function and memory API, which
+ * avoids starting a process for every GDAL step. The library utility functions (GDALInfo,
+ * GDALTranslate) take the same options as the command line programs.
+ */
+@Log4j2
+class NativeGdalBackend implements GdalBackend {
+
+  private static final int GA_READ_ONLY = 0;
+  private static final int GA_UPDATE = 1;
+  private static final int CE_FAILURE = 3;
+
+  private final MethodHandle gdalVersionInfo;
+  private final MethodHandle gdalOpen;
+  private final MethodHandle gdalClose;
+  private final MethodHandle gdalGetRasterXSize;
+  private final MethodHandle gdalGetRasterYSize;
+  private final MethodHandle gdalGetRasterCount;
+  private final MethodHandle gdalGetRasterBand;
+  private final MethodHandle gdalChecksumImage;
+  private final MethodHandle gdalGetRasterBandXSize;
+  private final MethodHandle gdalGetRasterBandYSize;
+  private final MethodHandle gdalGetOverviewCount;
+  private final MethodHandle gdalGetOverview;
+  private final MethodHandle gdalInfoOptionsNew;
+  private final MethodHandle gdalInfo;
+  private final MethodHandle gdalInfoOptionsFree;
+  private final MethodHandle gdalTranslateOptionsNew;
+  private final MethodHandle gdalTranslate;
+  private final MethodHandle gdalTranslateOptionsFree;
+  private final MethodHandle gdalBuildOverviews;
+  private final MethodHandle cplSetThreadLocalConfigOption;
+  private final MethodHandle cplErrorReset;
+  private final MethodHandle cplGetLastErrorType;
+  private final MethodHandle cplGetLastErrorMsg;
+  private final MethodHandle vsiFree;
+
+  private NativeGdalBackend(SymbolLookup lookup) {
+    Linker linker = Linker.nativeLinker();
+    Downcalls downcalls = new Downcalls(linker, lookup);
+
+    gdalVersionInfo = downcalls.of("GDALVersionInfo", ADDRESS, ADDRESS);
+    gdalOpen = downcalls.of("GDALOpen", ADDRESS, ADDRESS, JAVA_INT);
+    gdalClose = downcalls.ofVoid("GDALClose", ADDRESS);
+    gdalGetRasterXSize = downcalls.of("GDALGetRasterXSize", JAVA_INT, ADDRESS);
+    gdalGetRasterYSize = downcalls.of("GDALGetRasterYSize", JAVA_INT, ADDRESS);
+    gdalGetRasterCount = downcalls.of("GDALGetRasterCount", JAVA_INT, ADDRESS);
+    gdalGetRasterBand = downcalls.of("GDALGetRasterBand", ADDRESS, ADDRESS, JAVA_INT);
+    gdalChecksumImage = downcalls.of("GDALChecksumImage", JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT);
+    gdalGetRasterBandXSize = downcalls.of("GDALGetRasterBandXSize", JAVA_INT, ADDRESS);
+    gdalGetRasterBandYSize = downcalls.of("GDALGetRasterBandYSize", JAVA_INT, ADDRESS);
+    gdalGetOverviewCount = downcalls.of("GDALGetOverviewCount", JAVA_INT, ADDRESS);
+    gdalGetOverview = downcalls.of("GDALGetOverview", ADDRESS, ADDRESS, JAVA_INT);
+    gdalInfoOptionsNew = downcalls.of("GDALInfoOptionsNew", ADDRESS, ADDRESS, ADDRESS);
+    gdalInfo = downcalls.of("GDALInfo", ADDRESS, ADDRESS, ADDRESS);
+    gdalInfoOptionsFree = downcalls.ofVoid("GDALInfoOptionsFree", ADDRESS);
+    gdalTranslateOptionsNew = downcalls.of("GDALTranslateOptionsNew", ADDRESS, ADDRESS, ADDRESS);
+    gdalTranslate = downcalls.of("GDALTranslate", ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS);
+    gdalTranslateOptionsFree = downcalls.ofVoid("GDALTranslateOptionsFree", ADDRESS);
+    gdalBuildOverviews = downcalls.of("GDALBuildOverviews",
+        JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT, ADDRESS, ADDRESS, ADDRESS);
+    cplSetThreadLocalConfigOption = downcalls.ofVoid("CPLSetThreadLocalConfigOption", ADDRESS, ADDRESS);
+    cplErrorReset = downcalls.ofVoid("CPLErrorReset");
+    cplGetLastErrorType = downcalls.of("CPLGetLastErrorType", JAVA_INT);
+    cplGetLastErrorMsg = downcalls.of("CPLGetLastErrorMsg", ADDRESS);
+    vsiFree = downcalls.ofVoid("VSIFree", ADDRESS);
+
+    try {
+      downcalls.ofVoid("GDALAllRegister").invoke();
+    } catch (Throwable e) {
+      throw new RuntimeException("Failed to register GDAL drivers.", e);
+    }
+  }
+
+  static NativeGdalBackend load(String library) {
+    final SymbolLookup lookup;
+    if (library.contains("/") || library.contains("\\")) {
+      lookup = SymbolLookup.libraryLookup(Path.of(library), Arena.global());
+    } else if (library.contains(".")) {
+      lookup = SymbolLookup.libraryLookup(library, Arena.global());
+    } else {
+      lookup = SymbolLookup.libraryLookup(System.mapLibraryName(library), Arena.global());
+    }
+
+    NativeGdalBackend backend = new NativeGdalBackend(lookup);
+    log.info("Using in-process {}", backend.version());
+
+    return backend;
+  }
+
+  @Override
+  public String version() {
+    try (Arena arena = Arena.ofConfined()) {
+      return toJavaString((MemorySegment) gdalVersionInfo.invoke(arena.allocateUtf8String("--version")));
+    } catch (Throwable e) {
+      throw rethrow("GDALVersionInfo", e);
+    }
+  }
+
+  @Override
+  public GdalInfo info(Path file) {
+    String json;
+
+    try (Arena arena = Arena.ofConfined()) {
+      MemorySegment dataset = open(arena, file, GA_READ_ONLY);
+
+      try {
+        MemorySegment options = (MemorySegment) gdalInfoOptionsNew.invoke(
+            toStringList(arena, List.of("-json")), MemorySegment.NULL);
+        MemorySegment result = (MemorySegment) gdalInfo.invoke(dataset, options);
+        gdalInfoOptionsFree.invoke(options);
+
+        if (result.equals(MemorySegment.NULL)) {
+          throw new RuntimeException("GDALInfo failed for " + file + ": " + lastErrorMessage());
+        }
+
+        json = toJavaString(result);
+        vsiFree.invoke(result);
+      } finally {
+        gdalClose.invoke(dataset);
+      }
+    } catch (Throwable e) {
+      throw rethrow("GDALInfo", e);
+    }
+
+    try {
+      return new ObjectMapper().readValue(json, GdalInfo.class);
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException("Failed to parse GDALInfo output for " + file, e);
+    }
+  }
+
+  @Override
+  public void translate(Path input, Path output, List<String> options, Map<String, String> config) {
+    try (Arena arena = Arena.ofConfined()) {
+      setConfig(arena, config);
+      MemorySegment source = open(arena, input, GA_READ_ONLY);
+
+      try {
+        MemorySegment translateOptions = (MemorySegment) gdalTranslateOptionsNew.invoke(
+            toStringList(arena, options), MemorySegment.NULL);
+        if (translateOptions.equals(MemorySegment.NULL)) {
+          throw new RuntimeException("Invalid gdal_translate options " + options + ": " + lastErrorMessage());
+        }
+
+        MemorySegment usageError = arena.allocate(JAVA_INT);
+        MemorySegment target = (MemorySegment) gdalTranslate.invoke(
+            arena.allocateUtf8String(output.toAbsolutePath().toString()), source, translateOptions, usageError);
+        gdalTranslateOptionsFree.invoke(translateOptions);
+
+        if (target.equals(MemorySegment.NULL)) {
+          throw new RuntimeException("GDALTranslate failed for " + input + ": " + lastErrorMessage());
+        }
+
+        cplErrorReset.invoke();
+        gdalClose.invoke(target);
+        ensureNoError("Failed to write " + output);
+      } finally {
+        gdalClose.invoke(source);
+        resetConfig(arena, config);
+      }
+    } catch (Throwable e) {
+      throw rethrow("GDALTranslate", e);
+    }
+  }
+
+  @Override
+  public void addOverviews(
+      Path file, String resampling, int[] levels, int minSize, Map<String, String> config) {
+    try (Arena arena = Arena.ofConfined()) {
+      setConfig(arena, config);
+      MemorySegment dataset = open(arena, file, GA_UPDATE);
+
+      try {
+        int[] overviewLevels = levels != null
+            ? levels
+            : overviewLevels((int) gdalGetRasterXSize.invoke(dataset), (int) gdalGetRasterYSize.invoke(dataset), minSize);
+
+        if (overviewLevels.length == 0) {
+          return;
+        }
+
+        cplErrorReset.invoke();
+        int error = (int) gdalBuildOverviews.invoke(
+            dataset,
+            arena.allocateUtf8String(resampling.toUpperCase()),
+            overviewLevels.length,
+            arena.allocateArray(JAVA_INT, overviewLevels),
+            0,
+            MemorySegment.NULL,
+            MemorySegment.NULL,
+            MemorySegment.NULL);
+
+        if (error >= CE_FAILURE) {
+          throw new RuntimeException("Building overviews failed for " + file + ": " + lastErrorMessage());
+        }
+      } finally {
+        gdalClose.invoke(dataset);
+        resetConfig(arena, config);
+      }
+    } catch (Throwable e) {
+      throw rethrow("GDALBuildOverviews", e);
+    }
+  }
+
+  @Override
+  public void checksum(Path file) {
+    try (Arena arena = Arena.ofConfined()) {
+      MemorySegment dataset = open(arena, file, GA_READ_ONLY);
+
+      try {
+        int bandCount = (int) gdalGetRasterCount.invoke(dataset);
+
+        // like gdalinfo -checksum, every overview is decoded as well
+        for (int i = 1; i <= bandCount; i++) {
+          MemorySegment band = (MemorySegment) gdalGetRasterBand.invoke(dataset, i);
+          checksum(band, file);
+
+          int overviewCount = (int) gdalGetOverviewCount.invoke(band);
+          for (int j = 0; j < overviewCount; j++) {
+            checksum((MemorySegment) gdalGetOverview.invoke(band, j), file);
+          }
+        }
+      } finally {
+        gdalClose.invoke(dataset);
+      }
+    } catch (Throwable e) {
+      throw rethrow("GDALChecksumImage", e);
+    }
+  }
+
+  private void checksum(MemorySegment band, Path file) throws Throwable {
+    int width = (int) gdalGetRasterBandXSize.invoke(band);
+    int height = (int) gdalGetRasterBandYSize.invoke(band);
+
+    cplErrorReset.invoke();
+    gdalChecksumImage.invoke(band, 0, 0, width, height);
+    ensureNoError("Checksum failed to be computed for file: " + file);
+  }
+
+  /**
+   * Same levels as gdaladdo -minsize: halves until both dimensions fit into minSize.
+   */
+  static int[] overviewLevels(int width, int height, int minSize) {
+    List<Integer> levels = new ArrayList<>();
+
+    int factor = 1;
+    while (divRoundUp(width, factor) > minSize || divRoundUp(height, factor) > minSize) {
+      factor *= 2;
+      levels.add(factor);
+    }
+
+    return levels.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static int divRoundUp(int a, int b) {
+    return a / b + (a % b == 0 ? 0 : 1);
+  }
+
+  private MemorySegment open(Arena arena, Path file, int access) throws Throwable {
+    MemorySegment dataset = (MemorySegment) gdalOpen.invoke(arena.allocateUtf8String(file.toString()), access);
+
+    if (dataset.equals(MemorySegment.NULL)) {
+      throw new RuntimeException("Failed to open " + file + ": " + lastErrorMessage());
+    }
+
+    return dataset;
+  }
+
+  private void setConfig(Arena arena, Map<String, String> config) throws Throwable {
+    for (Map.Entry<String, String> option : config.entrySet()) {
+      cplSetThreadLocalConfigOption.invoke(
+          arena.allocateUtf8String(option.getKey()), arena.allocateUtf8String(option.getValue()));
+    }
+  }
+
+  private void resetConfig(Arena arena, Map<String, String> config) throws Throwable {
+    for (String key : config.keySet()) {
+      cplSetThreadLocalConfigOption.invoke(arena.allocateUtf8String(key), MemorySegment.NULL);
+    }
+  }
+
+  private void ensureNoError(String message) throws Throwable {
+    if ((int) cplGetLastErrorType.invoke() >= CE_FAILURE) {
+      throw new RuntimeException(message + ": " + lastErrorMessage());
+    }
+  }
+
+  private String lastErrorMessage() throws Throwable {
+    return toJavaString((MemorySegment) cplGetLastErrorMsg.invoke());
+  }
+
+  private static MemorySegment toStringList(Arena arena, List<String> values) {
+    MemorySegment list = arena.allocateArray(ADDRESS, values.size() + 1);
+
+    for (int i = 0; i < values.size(); i++) {
+      list.setAtIndex(ADDRESS, i, arena.allocateUtf8String(values.get(i)));
+    }
+    list.setAtIndex(ADDRESS, values.size(), MemorySegment.NULL);
+
+    return list;
+  }
+
+  private static String toJavaString(MemorySegment cString) {
+    if (cString.equals(MemorySegment.NULL)) {
+      return null;
+    }
+
+    return cString.reinterpret(Long.MAX_VALUE).getUtf8String(0);
+  }
+
+  private static RuntimeException rethrow(String function, Throwable e) {
+    if (e instanceof RuntimeException) {
+      return (RuntimeException) e;
+    }
+
+    return new RuntimeException("Calling " + function + " failed.", e);
+  }
+
+  @RequiredArgsConstructor
+  private static class Downcalls {
+
+    private final Linker linker;
+    private final SymbolLookup lookup;
+
+    MethodHandle of(String name, MemoryLayout result, MemoryLayout... arguments) {
+      return linker.downcallHandle(find(name), FunctionDescriptor.of(result, arguments));
+    }
+
+    MethodHandle ofVoid(String name, MemoryLayout... arguments) {
+      return linker.downcallHandle(find(name), FunctionDescriptor.ofVoid(arguments));
+    }
+
+    private MemorySegment find(String name) {
+      return lookup.find(name)
+          .orElseThrow(() -> new IllegalStateException("GDAL library does not export " + name));
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import lombok.Setter;
+import lombok.Value;
+import lombok.experimental.Accessors;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs a subprocess, streams its output lines to a consumer and kills it if it runs longer than
+ * the timeout. CPU time (see {@link ProcessHandle.Info#totalCpuDuration()}) and, on Linux, peak
+ * resident memory from /proc are sampled as soon as the child starts and then while it runs.
+ * The JDK reaps the child as soon as it exits, so its usage after the last sample is lost and the
+ * values are lower bounds, or null if the child could not be sampled at all.
+ */
+@Log4j2
+@Setter
+@Accessors(chain = true)
+public class ProcessRunner {
+
+  private static final long SAMPLING_INTERVAL_MILLIS = 20;
+
+  private Duration timeout;
+
+  private int retries;
+
+  private Consumer<String> outputConsumer = line -> log.trace(line);
+
+  private Consumer<ProcessStats> statsListener;
+
+  public ProcessResult run(ProcessBuilder pb) throws IOException, InterruptedException {
+    for (int attempt = 0; ; attempt++) {
+      ProcessResult result = runOnce(pb);
+
+      if (!result.stats().timedOut()) {
+        return result;
+      }
+
+      if (attempt >= retries) {
+        throw new IngestionException(String.format(
+            "Command %s timed out after %d attempt(s) of %s.",
+            String.join(" ", pb.command()), attempt + 1, timeout));
+      }
+
+      log.warn("Command {} timed out after {}, retrying.", String.join(" ", pb.command()), timeout);
+    }
+  }
+
+  private ProcessResult runOnce(ProcessBuilder pb) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    Process process = pb.start();
+    Path procFolder = Paths.get("/proc", String.valueOf(process.pid()));
+
+    StringBuilder output = new StringBuilder();
+    Thread outputReader = Thread.ofVirtual().start(() -> readOutput(process, output));
+
+    Sample sample = Sample.UNKNOWN.update(process, procFolder);
+    boolean timedOut = false;
+
+    try {
+      while (!process.waitFor(SAMPLING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+        sample = sample.update(process, procFolder);
+
+        if (timeout != null && System.nanoTime() - start > timeout.toNanos()) {
+          kill(process);
+          process.waitFor();
+          timedOut = true;
+          break;
+        }
+      }
+
+      outputReader.join();
+    } finally {
+      // interrupted while waiting, don't leave the command running behind us
+      if (process.isAlive()) {
+        kill(process);
+      }
+    }
+
+    ProcessStats stats = new ProcessStats(
+        programName(pb.command()),
+        (System.nanoTime() - start) / 1e9,
+        sample.cpuTime() == null ? null : sample.cpuTime().toNanos() / 1e9,
+        sample.peakRssKb(),
+        timedOut);
+
+    if (statsListener != null) {
+      statsListener.accept(stats);
+    }
+
+    return new ProcessResult(timedOut ? -1 : process.exitValue(), output.toString(), stats);
+  }
+
+  private static void kill(Process process) {
+    // descendants would keep the output pipe open
+    process.descendants().forEach(ProcessHandle::destroyForcibly);
+    process.destroyForcibly();
+  }
+
+  private void readOutput(Process process, StringBuilder output) {
+    try (BufferedReader rdr = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+      while ((line = rdr.readLine()) != null) {
+        if (output.length() > 0) {
+          output.append(System.lineSeparator());
+        }
+        output.append(line);
+
+        if (outputConsumer != null) {
+          outputConsumer.accept(line);
+        }
+      }
+    } catch (IOException e) {
+      log.debug("Stopped reading process output: {}", e.getMessage());
+    }
+  }
+
+  private static String programName(List<String> command) {
+    return Paths.get(command.get(0)).getFileName().toString();
+  }
+
+  @Value
+  @Accessors(fluent = true)
+  public static class ProcessResult {
+
+    int exitCode;
+    String output;
+    ProcessStats stats;
+  }
+
+  /** Usage of a finished command, CPU time and peak resident memory are null if not known. */
+  @Value
+  @Accessors(fluent = true)
+  public static class ProcessStats {
+
+    String program;
+    double wallSeconds;
+    Double cpuSeconds;
+    Long peakRssKb;
+    boolean timedOut;
+  }
+
+  @Value
+  @Accessors(fluent = true)
+  private static class Sample {
+
+    static final Sample UNKNOWN = new Sample(null, null);
+
+    Duration cpuTime;
+    Long peakRssKb;
+
+    /** Returns the usage of the process so far, or this sample if it has already exited. */
+    Sample update(Process process, Path procFolder) {
+      Duration cpu = process.info().totalCpuDuration().orElse(null);
+      Long rss = readPeakRssKb(procFolder);
+
+      return new Sample(
+          cpuTime == null || (cpu != null && cpu.compareTo(cpuTime) > 0) ? cpu : cpuTime,
+          peakRssKb == null || (rss != null && rss > peakRssKb) ? rss : peakRssKb);
+    }
+
+    private static Long readPeakRssKb(Path procFolder) {
+      try {
+        for (String line : Files.readAllLines(procFolder.resolve("status"))) {
+          if (line.startsWith("VmHWM:")) {
+            return Long.parseLong(line.replaceAll("[^0-9]", ""));
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        // not on Linux or the process has already exited
+      }
+
+      return null;
+    }
+  }
+}
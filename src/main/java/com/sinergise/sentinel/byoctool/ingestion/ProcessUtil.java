@@ -1,14 +1,17 @@
 package com.sinergise.sentinel.byoctool.ingestion;
 
+import com.sinergise.sentinel.byoctool.ingestion.ProcessRunner.ProcessResult;
 import lombok.extern.log4j.Log4j2;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.stream.Collectors;
-
 @Log4j2
 public class ProcessUtil {
 
+  private static volatile ProcessRunner runner = new ProcessRunner();
+
+  public static void setRunner(ProcessRunner runner) {
+    ProcessUtil.runner = runner;
+  }
+
   public static String runCommand(String... args) {
     ProcessBuilder pb = new ProcessBuilder(args);
     pb.redirectErrorStream(true);
@@ -20,20 +23,16 @@ public class ProcessUtil {
     try {
       log.trace("Running command: {}", String.join(" ", pb.command()));
 
-      Process process = pb.start();
-
-      final String stdOut;
-      try (BufferedReader rdr = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-        stdOut = rdr.lines().collect(Collectors.joining(System.lineSeparator()));
-      }
-
-      int errCode = process.waitFor();
-      if (errCode != 0) {
-        throw new IngestionException(stdOut);
+      ProcessResult result = runner.run(pb);
+      if (result.exitCode() != 0) {
+        throw new IngestionException(result.output());
       }
 
-      return stdOut;
+      return result.output();
     } catch (Exception e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
       throw new RuntimeException("Failed to run command " + String.join(" ", pb.command()), e);
     }
   }
@@ -0,0 +1,139 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sinergise.sentinel.byoctool.ingestion.ProcessRunner.ProcessStats;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
+
+@Log4j2
+public class RunReport {
+
+  private final List<CompressionChoice> compressionChoices = new ArrayList<>();
+  private final Map<String, CommandStats> commandStats = new LinkedHashMap<>();
+
+  synchronized void addCompressionChoice(CompressionChoice choice) {
+    compressionChoices.add(choice);
+  }
+
+  @JsonProperty("compressionChoices")
+  public synchronized List<CompressionChoice> getCompressionChoices() {
+    return new ArrayList<>(compressionChoices);
+  }
+
+  public synchronized void addProcessStats(ProcessStats stats) {
+    CommandStats current = commandStats.getOrDefault(stats.program(),
+        new CommandStats(stats.program(), 0, 0, 0, null, null));
+
+    commandStats.put(stats.program(), new CommandStats(
+        stats.program(),
+        current.getRuns() + 1,
+        current.getTimeouts() + (stats.timedOut() ? 1 : 0),
+        current.getWallSeconds() + stats.wallSeconds(),
+        combine(current.getCpuSeconds(), stats.cpuSeconds(), Double::sum),
+        combine(current.getPeakRssKb(), stats.peakRssKb(), Math::max)));
+  }
+
+  /** Combines the values, ignoring unknown ones, and returns null only if both are unknown. */
+  private static <T> T combine(T current, T value, BinaryOperator<T> operator) {
+    if (current == null || value == null) {
+      return current == null ? value : current;
+    }
+
+    return operator.apply(current, value);
+  }
+
+  /**
+   * Returns statistics of external commands, the one with the most wall time first.
+   */
+  @JsonProperty("commands")
+  public synchronized List<CommandStats> getCommandStats() {
+    List<CommandStats> stats = new ArrayList<>(commandStats.values());
+    stats.sort(Comparator.comparingDouble(CommandStats::getWallSeconds).reversed());
+    return stats;
+  }
+
+  public void log() {
+    for (CommandStats stats : getCommandStats()) {
+      log.info("{}: {} runs, {} timed out, wall time {} s, CPU time {} s, peak RSS {} MB",
+          stats.getProgram(), stats.getRuns(), stats.getTimeouts(),
+          String.format("%.1f", stats.getWallSeconds()),
+          stats.getCpuSeconds() == null ? "unknown" : String.format("%.1f", stats.getCpuSeconds()),
+          stats.getPeakRssKb() == null ? "unknown" : stats.getPeakRssKb() / 1024);
+    }
+
+    for (CompressionChoice choice : getCompressionChoices()) {
+      log.info("Band {} uses compression {}.", choice.getBand(), choice.getChosen());
+
+      for (CompressionTrial trial : choice.getTrials()) {
+        log.info("  {}: ratio {}, encoding took {} s", trial.getCompression(),
+            String.format("%.2f", trial.getRatio()), String.format("%.3f", trial.getSeconds()));
+      }
+    }
+  }
+
+  public void write(Path file) throws IOException {
+    new ObjectMapper()
+        .writerWithDefaultPrettyPrinter()
+        .writeValue(file.toFile(), this);
+  }
+
+  @Value
+  public static class CompressionChoice {
+
+    @JsonProperty("band")
+    String band;
+
+    @JsonProperty("chosen")
+    String chosen;
+
+    @JsonProperty("trials")
+    List<CompressionTrial> trials;
+  }
+
+  @Value
+  public static class CompressionTrial {
+
+    @JsonProperty("compression")
+    String compression;
+
+    @JsonProperty("ratio")
+    double ratio;
+
+    @JsonProperty("seconds")
+    double seconds;
+  }
+
+  @Value
+  public static class CommandStats {
+
+    @JsonProperty("program")
+    String program;
+
+    @JsonProperty("runs")
+    int runs;
+
+    @JsonProperty("timeouts")
+    int timeouts;
+
+    @JsonProperty("wallSeconds")
+    double wallSeconds;
+
+    /** CPU time of the runs whose usage is known, null if none of them is. */
+    @JsonProperty("cpuSeconds")
+    Double cpuSeconds;
+
+    /** Peak resident memory of the runs whose usage is known, null if none of them is. */
+    @JsonProperty("peakRssKb")
+    Long peakRssKb;
+  }
+}
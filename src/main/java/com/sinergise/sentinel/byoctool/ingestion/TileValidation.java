@@ -1,69 +1,140 @@
 package com.sinergise.sentinel.byoctool.ingestion;
 
-import com.sinergise.sentinel.byoctool.tiff.TiffCompoundDirectory;
+import com.sinergise.sentinel.byoctool.tiff.CogLayoutValidation;
 import com.sinergise.sentinel.byoctool.tiff.TiffDirectory;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadataRegistry;
+
+import lombok.Value;
+import lombok.experimental.Accessors;
 
-import javax.imageio.ImageIO;
-import javax.imageio.stream.ImageInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 
 public class TileValidation {
 
+  private static final int IO_THREADS = 16;
+
+  private static final ExecutorService IO_EXECUTOR = Executors.newFixedThreadPool(IO_THREADS, r -> {
+    Thread thread = new Thread(r, "tile-validation");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   static Collection<String> validate(Collection<Path> paths) throws IOException {
     if (paths.isEmpty()) {
       return Collections.emptyList();
     }
 
-    List<String> errors = new LinkedList<>();
-
-    List<TiffCompoundDirectory> ifds = new LinkedList<>();
-
-    for (Path path : paths) {
-      try (ImageInputStream iis = ImageIO.createImageInputStream(path.toFile())) {
-        TiffCompoundDirectory ifd = new TiffCompoundDirectory(iis);
-        ifds.add(ifd);
+    List<FileCheck> fileChecks = forEachFile(paths, TileValidation::checkFile);
 
-        if (ifd.geoAsciiParams() == null) {
-          errors.add(missingGeoParams(path));
-        }
-
-        if (ifd.modelTiePoint() == null) {
-          errors.add(missingTiePoint(path));
-        }
+    List<String> errors = new LinkedList<>();
+    List<TiffMetadata> metadatas = new LinkedList<>();
 
-        if (ifd.scale() == null) {
-          errors.add(missingScale(path));
-        }
-      }
+    for (FileCheck fileCheck : fileChecks) {
+      errors.addAll(fileCheck.errors());
+      metadatas.add(fileCheck.metadata());
     }
 
-    if (differentValues(ifds, TiffDirectory::geoAsciiParams)) {
-      errors.add(differentGeoParams());
+    if (differentValues(metadatas, TiffMetadata::epsgCode)) {
+      errors.add(differentEpsgCodes());
     } else {
-      Integer epsgCode = GdalSrsInfo.readEpsgCode(paths.iterator().next());
+      Integer epsgCode = metadatas.get(0).epsgCode();
 
       if (epsgCode == null || !isCrsSupported(epsgCode)) {
         errors.add(unsupportedEpsgCode(epsgCode));
       }
     }
 
-    if (differentValues(ifds, TiffDirectory::modelTiePoint)) {
+    if (differentValues(metadatas, TiffMetadata::modelTiePoint)) {
       errors.add(differentTiePoints());
     }
 
     return errors;
   }
 
-  private static String missingGeoParams(Path path) {
+  static Collection<String> validateCogLayout(Collection<Path> paths) throws IOException {
+    List<String> errors = new LinkedList<>();
+
+    for (List<String> fileErrors : forEachFile(paths,
+        path -> CogLayoutValidation.validate(path, CogFactory.TILE_SIZE))) {
+      errors.addAll(fileErrors);
+    }
+
+    return errors;
+  }
+
+  private static FileCheck checkFile(Path path) throws IOException {
+    TiffMetadata metadata = TiffMetadataRegistry.get(path);
+    List<String> errors = new LinkedList<>();
+
+    if (!metadata.hasGeoKeyDirectory() && metadata.geoAsciiParams() == null) {
+      errors.add(missingGeoKeys(path));
+    }
+
+    if (metadata.modelTiePoint() == null) {
+      errors.add(missingTiePoint(path));
+    }
+
+    if (metadata.scale() == null) {
+      errors.add(missingScale(path));
+    }
+
+    return new FileCheck(metadata, errors);
+  }
+
+  /**
+   * Runs the check for every file on the I/O executor, so the time is set by the slowest file.
+   * Results are in the order of paths.
+   */
+  private static <T> List<T> forEachFile(Collection<Path> paths, FileFunction<T> check)
+      throws IOException {
+
+    if (paths.size() == 1) {
+      return Collections.singletonList(check.apply(paths.iterator().next()));
+    }
+
+    List<CompletableFuture<T>> futures = new ArrayList<>();
+    for (Path path : paths) {
+      futures.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          return check.apply(path);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, IO_EXECUTOR));
+    }
+
+    List<T> results = new ArrayList<>();
+    try {
+      for (CompletableFuture<T> future : futures) {
+        results.add(future.join());
+      }
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw e;
+    }
+
+    return results;
+  }
+
+  private static String missingGeoKeys(Path path) {
     return String.format(
         "File %s is missing TIFF tag %s, which is required so we can get coordinate reference system.",
-        path, TiffDirectory.TAG_GEO_ASCII_PARAMS);
+        path, TiffDirectory.TAG_GEO_KEY_DIRECTORY);
   }
 
   private static String missingTiePoint(Path path) {
@@ -78,9 +149,8 @@ public class TileValidation {
         path, TiffDirectory.TAG_MODEL_PIXEL_SCALE);
   }
 
-  private static String differentGeoParams() {
-    return String.format(
-        "Files have different values in TIFF tag %d.", TiffDirectory.TAG_GEO_ASCII_PARAMS);
+  private static String differentEpsgCodes() {
+    return "Files have different coordinate reference systems.";
   }
 
   private static String differentTiePoints() {
@@ -104,4 +174,17 @@ public class TileValidation {
         || (epsgCode >= 32601 && epsgCode <= 32660)
         || (epsgCode >= 32701 && epsgCode <= 32760);
   }
+
+  private interface FileFunction<T> {
+
+    T apply(Path path) throws IOException;
+  }
+
+  @Value
+  @Accessors(fluent = true)
+  private static class FileCheck {
+
+    TiffMetadata metadata;
+    List<String> errors;
+  }
 }
@@ -1,5 +1,6 @@
 package com.sinergise.sentinel.byoctool.ingestion.storage;
 
+import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
@@ -9,7 +10,10 @@ import lombok.RequiredArgsConstructor;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 @RequiredArgsConstructor
 public class GCStorageClient implements ObjectStorageClient {
@@ -44,8 +48,7 @@ public class GCStorageClient implements ObjectStorageClient {
 
     BlobId objectId = BlobId.of(bucketName, key);
     try {
-      Blob blob = storage.get(objectId);
-      return new ByteArrayInputStream(blob.getContent());
+      return Channels.newInputStream(storage.reader(objectId));
     } catch (Exception ex) {
       throw new RuntimeException("Failed to read from: gs://" + bucketName + "/" + key, ex);
     }
@@ -62,6 +65,43 @@ public class GCStorageClient implements ObjectStorageClient {
     }
   }
 
+  @Override
+  public byte[] readRange(String bucketName, String key, long offset, int length) {
+    BlobId objectId = BlobId.of(bucketName, key);
+    try (ReadChannel reader = storage.reader(objectId)) {
+      reader.seek(offset);
+      reader.limit(offset + length);
+
+      // a read may return fewer bytes than asked for, stop once the buffer is full or at the end
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (reader.read(buffer) < 0) {
+          break;
+        }
+      }
+
+      return Arrays.copyOf(buffer.array(), buffer.position());
+    } catch (Exception ex) {
+      throw new RuntimeException("Failed to read from: gs://" + bucketName + "/" + key, ex);
+    }
+  }
+
+  @Override
+  public String objectVersion(String bucketName, String key) {
+    Blob blob;
+    try {
+      blob = storage.get(BlobId.of(bucketName, key));
+    } catch (Exception ex) {
+      throw new RuntimeException("Failed to read metadata of: gs://" + bucketName + "/" + key, ex);
+    }
+
+    if (blob == null) {
+      throw new RuntimeException("Object not found: gs://" + bucketName + "/" + key);
+    }
+
+    return String.valueOf(blob.getGeneration());
+  }
+
   @Override
   public void close() {
   }
@@ -0,0 +1,101 @@
+package com.sinergise.sentinel.byoctool.ingestion.storage;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Stores objects as files in a local folder, where every bucket is a subfolder.
+ */
+@RequiredArgsConstructor
+public class LocalStorageClient implements ObjectStorageClient {
+
+  private final Path rootFolder;
+
+  @Override
+  public void store(String bucketName, String objectKey, Path localCogPath) {
+    try {
+      Path target = objectPath(bucketName, objectKey);
+      Files.createDirectories(target.getParent());
+      Files.copy(localCogPath, target, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to store " + localCogPath, e);
+    }
+  }
+
+  @Override
+  public void store(String bucketName, String objectKey, byte[] data) {
+    try {
+      Path target = objectPath(bucketName, objectKey);
+      Files.createDirectories(target.getParent());
+      Files.write(target, data);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to store data to " + objectKey, e);
+    }
+  }
+
+  @Override
+  public InputStream getObjectAsStream(String bucketName, String key) {
+    try {
+      return Files.newInputStream(objectPath(bucketName, key));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + key, e);
+    }
+  }
+
+  @Override
+  public void downloadObject(String bucketName, String key, Path target) {
+    try {
+      Files.copy(objectPath(bucketName, key), target, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to download " + key, e);
+    }
+  }
+
+  @Override
+  public byte[] readRange(String bucketName, String key, long offset, int length) {
+    try (FileChannel channel = FileChannel.open(objectPath(bucketName, key), StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+      }
+
+      return Arrays.copyOf(buffer.array(), buffer.position());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + key, e);
+    }
+  }
+
+  @Override
+  public String objectVersion(String bucketName, String key) {
+    Path object = objectPath(bucketName, key);
+    try {
+      return Files.getLastModifiedTime(object).toMillis() + "-" + Files.size(object);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read attributes of " + key, e);
+    }
+  }
+
+  @Override
+  public void close() {
+  }
+
+  private Path objectPath(String bucketName, String key) {
+    Path bucket = rootFolder.resolve(bucketName).normalize();
+    Path object = bucket.resolve(key).normalize();
+
+    if (!object.startsWith(bucket)) {
+      throw new IllegalArgumentException("Object key " + key + " is outside of the bucket.");
+    }
+
+    return object;
+  }
+}
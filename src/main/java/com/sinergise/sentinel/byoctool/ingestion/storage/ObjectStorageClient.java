@@ -13,5 +13,17 @@ public interface ObjectStorageClient {
 
   void downloadObject(String bucketName, String key, Path target);
 
+  /**
+   * Reads {@code length} bytes of an object starting at {@code offset}. Fewer bytes are returned
+   * only if the object ends before.
+   */
+  byte[] readRange(String bucketName, String key, long offset, int length);
+
+  /**
+   * Returns a value which changes whenever the object changes, such as its ETag or generation,
+   * without reading the object.
+   */
+  String objectVersion(String bucketName, String key);
+
   void close();
 }
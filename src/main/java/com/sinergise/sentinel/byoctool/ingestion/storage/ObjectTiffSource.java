@@ -0,0 +1,82 @@
+package com.sinergise.sentinel.byoctool.ingestion.storage;
+
+import com.sinergise.sentinel.byoctool.tiff.TiffSource;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a TIFF object with ranged reads, so its header can be parsed without downloading the
+ * object. Small reads are served from 16 KB blocks, which are fetched once, so the header and the
+ * IFDs near it usually cost a single request.
+ */
+@RequiredArgsConstructor
+public class ObjectTiffSource implements TiffSource {
+
+  static final int BLOCK_SIZE = 16 * 1024;
+
+  private final ObjectStorageClient objectStorageClient;
+  private final String bucketName;
+  private final String key;
+
+  private final Map<Long, byte[]> blocks = new HashMap<>();
+
+  @Getter
+  private long bytesRead;
+
+  @Override
+  public synchronized ByteBuffer read(long offset, int length) throws IOException {
+    if (length > BLOCK_SIZE) {
+      return ByteBuffer.wrap(fetch(offset, length));
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+
+    while (buffer.hasRemaining()) {
+      long position = offset + buffer.position();
+      byte[] block = block(position / BLOCK_SIZE);
+      int blockOffset = (int) (position % BLOCK_SIZE);
+
+      if (blockOffset >= block.length) {
+        throw new EOFException(String.format("Object %s ends before %d.", key, offset + length));
+      }
+
+      buffer.put(block, blockOffset, Math.min(buffer.remaining(), block.length - blockOffset));
+    }
+
+    return buffer.flip();
+  }
+
+  @Override
+  public void close() {
+    blocks.clear();
+  }
+
+  private byte[] block(long index) throws IOException {
+    byte[] block = blocks.get(index);
+
+    if (block == null) {
+      block = objectStorageClient.readRange(bucketName, key, index * BLOCK_SIZE, BLOCK_SIZE);
+      bytesRead += block.length;
+      blocks.put(index, block);
+    }
+
+    return block;
+  }
+
+  private byte[] fetch(long offset, int length) throws IOException {
+    byte[] bytes = objectStorageClient.readRange(bucketName, key, offset, length);
+    bytesRead += bytes.length;
+
+    if (bytes.length < length) {
+      throw new EOFException(String.format("Object %s ends before %d.", key, offset + length));
+    }
+
+    return bytes;
+  }
+}
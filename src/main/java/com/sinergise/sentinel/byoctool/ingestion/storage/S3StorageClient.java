@@ -6,6 +6,7 @@ import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 
 import java.io.InputStream;
 import java.nio.file.Path;
@@ -79,6 +80,27 @@ public class S3StorageClient implements ObjectStorageClient {
     s3Client.getObject(request, ResponseTransformer.toFile(target));
   }
 
+  @Override
+  public byte[] readRange(String bucketName, String key, long offset, int length) {
+    GetObjectRequest request = GetObjectRequest.builder()
+        .bucket(bucketName)
+        .key(key)
+        .range(String.format("bytes=%d-%d", offset, offset + length - 1))
+        .build();
+
+    return s3Client.getObjectAsBytes(request).asByteArray();
+  }
+
+  @Override
+  public String objectVersion(String bucketName, String key) {
+    HeadObjectRequest request = HeadObjectRequest.builder()
+        .bucket(bucketName)
+        .key(key)
+        .build();
+
+    return s3Client.headObject(request).eTag();
+  }
+
   @Override
   public void close() {
     s3Client.close();
@@ -0,0 +1,87 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata.Image;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Checks that a GeoTIFF is laid out as a cloud optimized GeoTIFF: every image is tiled with the
+ * expected tile size, IFDs come before any tile data, overviews get smaller and the tile data of
+ * smaller overviews comes before the data of larger ones. Only TIFF headers are read.
+ */
+public class CogLayoutValidation {
+
+  public static List<String> validate(Path path, int tileSize) throws IOException {
+    return validate(path, TiffMetadataRegistry.get(path), tileSize);
+  }
+
+  static List<String> validate(Path path, TiffMetadata metadata, int tileSize) {
+    List<String> errors = new LinkedList<>();
+    List<Image> images = metadata.images();
+
+    long lastIfdOffset = 0;
+    long firstDataOffset = Long.MAX_VALUE;
+
+    for (int i = 0; i < images.size(); i++) {
+      Image image = images.get(i);
+
+      if (i > 0 && image.ifdOffset() < images.get(i - 1).ifdOffset()) {
+        errors.add(String.format("File %s has IFD %d located before IFD %d.", path, i, i - 1));
+      }
+
+      lastIfdOffset = Math.max(lastIfdOffset, image.ifdOffset());
+
+      if (!image.tiled()) {
+        errors.add(String.format("File %s has image %d which is not tiled.", path, i));
+      } else if (image.minTileOffset() != 0) {
+        firstDataOffset = Math.min(firstDataOffset, image.minTileOffset());
+      }
+    }
+
+    if (lastIfdOffset > firstDataOffset) {
+      errors.add(String.format("File %s has IFDs located after tile data.", path));
+    }
+
+    List<Image> resolutions = new ArrayList<>();
+    Long expectedTileSize = (long) tileSize;
+
+    for (int i = 0; i < images.size(); i++) {
+      Image image = images.get(i);
+
+      if (!image.tiled() || image.mask()) {
+        continue;
+      }
+
+      if (!expectedTileSize.equals(image.tileWidth())
+          || !expectedTileSize.equals(image.tileHeight())) {
+        errors.add(String.format("File %s has image %d with tiles of %dx%d instead of %dx%d.",
+            path, i, image.tileWidth(), image.tileHeight(), tileSize, tileSize));
+      }
+
+      resolutions.add(image);
+    }
+
+    for (int i = 1; i < resolutions.size(); i++) {
+      Image larger = resolutions.get(i - 1);
+      Image smaller = resolutions.get(i);
+
+      if (smaller.width() >= larger.width() || smaller.height() >= larger.height()) {
+        errors.add(String.format(
+            "File %s has overview %d which is not smaller than the previous image.", path, i));
+      }
+
+      if (larger.firstTileOffset() != 0
+          && smaller.firstTileOffset() != 0
+          && smaller.firstTileOffset() > larger.firstTileOffset()) {
+        errors.add(String.format(
+            "File %s has tile data of overview %d located after the data of the previous image.",
+            path, i));
+      }
+    }
+
+    return errors;
+  }
+}
@@ -0,0 +1,71 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a local TIFF file. The start of the file, where a COG keeps all its IFDs and tile
+ * offsets, is buffered on the heap and grown as reads reach further into it, anything after it is
+ * read with positional reads. Nothing is memory-mapped, so the file can be deleted once closed.
+ */
+public class FileTiffSource implements TiffSource {
+
+  static final int HEADER_REGION_SIZE = 4 * 1024 * 1024;
+
+  private static final int MIN_BUFFERED_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+  private final long size;
+  private ByteBuffer headerRegion = ByteBuffer.allocate(0);
+
+  public FileTiffSource(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+
+    try {
+      size = channel.size();
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public ByteBuffer read(long offset, int length) throws IOException {
+    if (offset < 0 || offset + length > size) {
+      throw new EOFException(
+          String.format("Cannot read %d bytes at %d from a file of %d bytes.", length, offset, size));
+    }
+
+    long end = offset + length;
+    if (end <= HEADER_REGION_SIZE) {
+      if (end > headerRegion.capacity()) {
+        long buffered = Math.max(end, Math.max(2L * headerRegion.capacity(), MIN_BUFFERED_SIZE));
+        headerRegion = readFully(0, (int) Math.min(Math.min(buffered, HEADER_REGION_SIZE), size));
+      }
+
+      return headerRegion.slice((int) offset, length).asReadOnlyBuffer();
+    }
+
+    return readFully(offset, length);
+  }
+
+  private ByteBuffer readFully(long offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+
+    return buffer.flip();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
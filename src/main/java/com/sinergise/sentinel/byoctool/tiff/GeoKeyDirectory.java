@@ -0,0 +1,110 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decoded GeoTIFF GeoKeyDirectoryTag. Key values are stored inline as a short, in the
+ * GeoDoubleParamsTag as doubles or in the GeoAsciiParamsTag as a '|' terminated string.
+ */
+public class GeoKeyDirectory {
+
+  public static final int KEY_MODEL_TYPE = 1024;
+  public static final int KEY_GEOGRAPHIC_TYPE = 2048;
+  public static final int KEY_PROJECTED_CS_TYPE = 3072;
+
+  public static final int MODEL_TYPE_PROJECTED = 1;
+  public static final int MODEL_TYPE_GEOGRAPHIC = 2;
+
+  public static final int USER_DEFINED = 32767;
+
+  private static final int LOCATION_INLINE = 0;
+
+  private final Map<Integer, Object> values;
+
+  private GeoKeyDirectory(Map<Integer, Object> values) {
+    this.values = Collections.unmodifiableMap(values);
+  }
+
+  static GeoKeyDirectory decode(int[] directory, double[] doubleParams, String asciiParams) {
+    Map<Integer, Object> values = new HashMap<>();
+
+    if (directory.length < 4) {
+      return new GeoKeyDirectory(values);
+    }
+
+    int keyCount = directory[3];
+
+    for (int i = 0; i < keyCount && 4 * (i + 2) <= directory.length; i++) {
+      int keyId = directory[4 * (i + 1)];
+      int location = directory[4 * (i + 1) + 1];
+      int count = directory[4 * (i + 1) + 2];
+      int valueOffset = directory[4 * (i + 1) + 3];
+
+      if (location == LOCATION_INLINE) {
+        values.put(keyId, valueOffset);
+      } else if (location == TiffDirectory.TAG_GEO_DOUBLE_PARAMS && doubleParams != null
+          && valueOffset + count <= doubleParams.length) {
+        double[] doubles = new double[count];
+        System.arraycopy(doubleParams, valueOffset, doubles, 0, count);
+        values.put(keyId, doubles);
+      } else if (location == TiffDirectory.TAG_GEO_ASCII_PARAMS && asciiParams != null
+          && valueOffset + count <= asciiParams.length()) {
+        String ascii = asciiParams.substring(valueOffset, valueOffset + count);
+        values.put(keyId, ascii.endsWith("|") ? ascii.substring(0, ascii.length() - 1) : ascii);
+      }
+    }
+
+    return new GeoKeyDirectory(values);
+  }
+
+  public Integer shortValue(int keyId) {
+    Object value = values.get(keyId);
+    return value instanceof Integer ? (Integer) value : null;
+  }
+
+  public double[] doubleValue(int keyId) {
+    Object value = values.get(keyId);
+    return value instanceof double[] ? (double[]) value : null;
+  }
+
+  public String asciiValue(int keyId) {
+    Object value = values.get(keyId);
+    return value instanceof String ? (String) value : null;
+  }
+
+  /**
+   * Returns the EPSG code of the projected or geographic coordinate reference system, or null if
+   * it is user-defined or missing.
+   */
+  public Integer epsgCode() {
+    Integer modelType = shortValue(KEY_MODEL_TYPE);
+    Integer projected = epsgCode(KEY_PROJECTED_CS_TYPE);
+    Integer geographic = epsgCode(KEY_GEOGRAPHIC_TYPE);
+
+    if (modelType == null) {
+      return projected != null ? projected : geographic;
+    }
+
+    if (modelType == MODEL_TYPE_PROJECTED) {
+      return projected;
+    }
+
+    if (modelType == MODEL_TYPE_GEOGRAPHIC) {
+      return geographic;
+    }
+
+    return null;
+  }
+
+  private Integer epsgCode(int keyId) {
+    Integer code = shortValue(keyId);
+
+    if (code == null || code == 0 || code == USER_DEFINED) {
+      return null;
+    }
+
+    return code;
+  }
+}
@@ -0,0 +1,28 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.imageio.stream.ImageInputStream;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Reads a TIFF file from an image input stream, which stays open after the source is closed.
+ */
+@RequiredArgsConstructor
+class ImageInputStreamTiffSource implements TiffSource {
+
+  private final ImageInputStream iis;
+
+  @Override
+  public ByteBuffer read(long offset, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    iis.seek(offset);
+    iis.readFully(bytes);
+
+    return ByteBuffer.wrap(bytes);
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -1,28 +1,39 @@
 package com.sinergise.sentinel.byoctool.tiff;
 
-import com.twelvemonkeys.imageio.metadata.CompoundDirectory;
-import com.twelvemonkeys.imageio.metadata.tiff.TIFFReader;
 import java.io.IOException;
+import java.util.List;
 import javax.imageio.stream.ImageInputStream;
 
 public class TiffCompoundDirectory extends TiffDirectory {
 
-  private final CompoundDirectory compoundDirectory;
+  private final List<TiffIfd> ifds;
 
   public TiffCompoundDirectory(ImageInputStream iis) throws IOException {
-    this((CompoundDirectory) new TIFFReader().read(iis));
+    this(new ImageInputStreamTiffSource(iis));
   }
 
-  private TiffCompoundDirectory(CompoundDirectory compoundDirectory) {
-    super(compoundDirectory);
-    this.compoundDirectory = compoundDirectory;
+  public TiffCompoundDirectory(TiffSource source) throws IOException {
+    this(TiffIfd.readAll(source));
+  }
+
+  private TiffCompoundDirectory(List<TiffIfd> ifds) throws IOException {
+    super(firstIfd(ifds));
+    this.ifds = ifds;
   }
 
   public TiffDirectory directory(int index) {
-    return new TiffDirectory(compoundDirectory.getDirectory(index));
+    return new TiffDirectory(ifds.get(index));
   }
 
   public int directoryCount() {
-    return compoundDirectory.directoryCount();
+    return ifds.size();
+  }
+
+  private static TiffIfd firstIfd(List<TiffIfd> ifds) throws IOException {
+    if (ifds.isEmpty()) {
+      throw new IOException("TIFF file has no IFD.");
+    }
+
+    return ifds.get(0);
   }
 }
@@ -2,8 +2,6 @@ package com.sinergise.sentinel.byoctool.tiff;
 
 import static com.twelvemonkeys.imageio.metadata.tiff.TIFF.*;
 
-import com.twelvemonkeys.imageio.metadata.Directory;
-import com.twelvemonkeys.imageio.metadata.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.Value;
@@ -13,6 +11,8 @@ import org.locationtech.jts.geom.Envelope;
 public class TiffDirectory {
 
   public static final int TAG_MODEL_PIXEL_SCALE = 33550;
+  public static final int TAG_GEO_KEY_DIRECTORY = 34735;
+  public static final int TAG_GEO_DOUBLE_PARAMS = 34736;
   public static final int TAG_GEO_ASCII_PARAMS = 34737;
   public static final int TAG_MODEL_TIE_POINT = 33922;
   public static final int TAG_GDAL_NO_DATA_VALUE = 42113;
@@ -20,60 +20,78 @@ public class TiffDirectory {
   private static final Pattern GEO_TIFF_CRS_PATTERN =
       Pattern.compile("(?:WGS 84 / (UTM|Pseudo-Mercator)(?: zone ([0-9]{2})([SN]))?\\|)?WGS 84\\|");
 
-  private final Directory directory;
+  private final TiffIfd ifd;
 
-  public TiffDirectory(Directory directory) {
-    this.directory = directory;
+  public TiffDirectory(TiffIfd ifd) {
+    this.ifd = ifd;
+  }
+
+  public long ifdOffset() {
+    return ifd.offset();
   }
 
   public Long imageWidth() {
-    Entry entry = getEntry(TAG_IMAGE_WIDTH);
+    return ifd.firstLong(TAG_IMAGE_WIDTH);
+  }
 
-    if (entry == null) {
-      return null;
+  public Long imageHeight() {
+    return ifd.firstLong(TAG_IMAGE_HEIGHT);
+  }
+
+  public int sampleFormat() {
+    Long sampleFormat = ifd.firstLong(TAG_SAMPLE_FORMAT);
+
+    if (sampleFormat == null) {
+      return SampleFormat.UINT;
     }
 
-    return ((Number) entry.getValue()).longValue();
+    return sampleFormat.intValue();
   }
 
-  public Long imageHeight() {
-    Entry entry = getEntry(TAG_IMAGE_HEIGHT);
+  public int bitsPerSample() {
+    Long bitsPerSample = ifd.firstLong(TAG_BITS_PER_SAMPLE);
 
-    if (entry == null) {
-      return null;
+    if (bitsPerSample == null) {
+      return 1;
     }
 
-    return ((Number) entry.getValue()).longValue();
+    return bitsPerSample.intValue();
   }
 
-  public int sampleFormat() {
-    Entry entry = getEntry(TAG_SAMPLE_FORMAT);
+  public Long tileWidth() {
+    return ifd.firstLong(TAG_TILE_WIDTH);
+  }
 
-    if (entry == null) {
-      return SampleFormat.UINT;
-    }
+  public Long tileHeight() {
+    return ifd.firstLong(TAG_TILE_HEIGTH);
+  }
 
-    return (Integer) entry.getValue();
+  public long[] tileOffsets() {
+    return ifd.longs(TAG_TILE_OFFSETS);
   }
 
-  public Scale scale() {
-    Entry entry = getEntry(TAG_MODEL_PIXEL_SCALE);
+  public long[] tileByteCounts() {
+    return ifd.longs(TAG_TILE_BYTE_COUNTS);
+  }
 
-    if (entry == null) {
-      return null;
-    }
+  public boolean isMask() {
+    Long subfileType = ifd.firstLong(TAG_SUBFILE_TYPE);
 
-    return new Scale((double[]) entry.getValue());
+    return subfileType != null && (subfileType & 4) != 0;
   }
 
-  public String noDataValue() {
-    Entry entry = getEntry(TAG_GDAL_NO_DATA_VALUE);
+  public Scale scale() {
+    double[] scale = ifd.doubles(TAG_MODEL_PIXEL_SCALE);
 
-    if (entry == null) {
+    if (scale == null) {
       return null;
     }
 
-    return entry.getValueAsString();
+    return new Scale(scale);
+  }
+
+  public String noDataValue() {
+    return ifd.ascii(TAG_GDAL_NO_DATA_VALUE);
   }
 
   public Integer noDataValueAsInt() {
@@ -87,23 +105,32 @@ public class TiffDirectory {
   }
 
   public TiePoint modelTiePoint() {
-    Entry entry = getEntry(TAG_MODEL_TIE_POINT);
+    double[] tiePoint = ifd.doubles(TAG_MODEL_TIE_POINT);
 
-    if (entry == null) {
+    if (tiePoint == null) {
       return null;
     }
 
-    return new TiePoint((double[]) entry.getValue());
+    return new TiePoint(tiePoint);
   }
 
   public String geoAsciiParams() {
-    Entry entry = getEntry(TAG_GEO_ASCII_PARAMS);
+    return ifd.ascii(TAG_GEO_ASCII_PARAMS);
+  }
+
+  public GeoKeyDirectory geoKeyDirectory() {
+    long[] directory = ifd.longs(TAG_GEO_KEY_DIRECTORY);
 
-    if (entry == null) {
+    if (directory == null) {
       return null;
     }
 
-    return entry.getValueAsString();
+    int[] shorts = new int[directory.length];
+    for (int i = 0; i < directory.length; i++) {
+      shorts[i] = (int) directory[i];
+    }
+
+    return GeoKeyDirectory.decode(shorts, ifd.doubles(TAG_GEO_DOUBLE_PARAMS), geoAsciiParams());
   }
 
   public Envelope envelope() {
@@ -118,8 +145,28 @@ public class TiffDirectory {
     return new Envelope(minX, maxX, minY, maxY);
   }
 
+  /**
+   * Returns the EPSG code from the GeoKeyDirectoryTag. For user-defined coordinate reference
+   * systems, it is guessed from the citation in GeoAsciiParamsTag.
+   */
   public Integer epsgCode() {
-    return epsgCode(geoAsciiParams());
+    GeoKeyDirectory geoKeyDirectory = geoKeyDirectory();
+
+    if (geoKeyDirectory != null) {
+      Integer epsgCode = geoKeyDirectory.epsgCode();
+
+      if (epsgCode != null) {
+        return epsgCode;
+      }
+    }
+
+    String geoAsciiParams = geoAsciiParams();
+
+    if (geoAsciiParams == null) {
+      return null;
+    }
+
+    return epsgCode(geoAsciiParams);
   }
 
   static Integer epsgCode(String geoParams) {
@@ -149,10 +196,6 @@ public class TiffDirectory {
     return null;
   }
 
-  private Entry getEntry(int entryId) {
-    return directory.getEntryById(entryId);
-  }
-
   public static class SampleFormat {
 
     public static final int UINT = 1;
@@ -0,0 +1,292 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import static com.twelvemonkeys.imageio.metadata.tiff.TIFF.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One image file directory of a TIFF file. Only the entry table is read up front, values are
+ * decoded from the source when requested, into primitive arrays. Values stored outside the entry
+ * table can only be decoded while the source is open.
+ */
+public class TiffIfd {
+
+  private static final int MAX_IFD_COUNT = 1000;
+  private static final int MAX_ENTRY_COUNT = 65535;
+
+  // value sizes in bytes indexed by TIFF type
+  private static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8, 4, 0, 0, 8, 8, 8};
+
+  private final TiffSource source;
+  private final ByteOrder byteOrder;
+  private final boolean bigTiff;
+  private final long offset;
+  private final ByteBuffer entries;
+  private final int entryCount;
+
+  private TiffIfd(
+      TiffSource source, ByteOrder byteOrder, boolean bigTiff, long offset, ByteBuffer entries,
+      int entryCount) {
+    this.source = source;
+    this.byteOrder = byteOrder;
+    this.bigTiff = bigTiff;
+    this.offset = offset;
+    this.entries = entries;
+    this.entryCount = entryCount;
+  }
+
+  /**
+   * Reads the header and the entry tables of all IFDs in the chain.
+   */
+  public static List<TiffIfd> readAll(TiffSource source) throws IOException {
+    ByteBuffer header = source.read(0, 8);
+    ByteOrder byteOrder;
+
+    short byteOrderMark = header.getShort(0);
+    if (byteOrderMark == BYTE_ORDER_MARK_LITTLE_ENDIAN) {
+      byteOrder = ByteOrder.LITTLE_ENDIAN;
+    } else if (byteOrderMark == BYTE_ORDER_MARK_BIG_ENDIAN) {
+      byteOrder = ByteOrder.BIG_ENDIAN;
+    } else {
+      throw new IOException("Not a TIFF file.");
+    }
+    header.order(byteOrder);
+
+    int magic = Short.toUnsignedInt(header.getShort(2));
+    if (magic != TIFF_MAGIC && magic != BIGTIFF_MAGIC) {
+      throw new IOException("Not a TIFF file.");
+    }
+
+    boolean bigTiff = magic == BIGTIFF_MAGIC;
+    int countSize = bigTiff ? 8 : 2;
+    int entrySize = bigTiff ? 20 : 12;
+    int offsetSize = bigTiff ? 8 : 4;
+
+    long offset = bigTiff
+        ? source.read(8, 8).order(byteOrder).getLong(0)
+        : Integer.toUnsignedLong(header.getInt(4));
+
+    List<TiffIfd> ifds = new ArrayList<>();
+    Set<Long> visited = new HashSet<>();
+
+    while (offset != 0 && visited.add(offset) && ifds.size() < MAX_IFD_COUNT) {
+      ByteBuffer count = source.read(offset, countSize).order(byteOrder);
+      long entryCount = bigTiff ? count.getLong(0) : Short.toUnsignedInt(count.getShort(0));
+
+      if (entryCount < 0 || entryCount > MAX_ENTRY_COUNT) {
+        throw new IOException(String.format("IFD at %d has %d entries.", offset, entryCount));
+      }
+
+      int entriesSize = (int) entryCount * entrySize;
+      ByteBuffer entries =
+          source.read(offset + countSize, entriesSize + offsetSize).order(byteOrder);
+
+      ifds.add(new TiffIfd(source, byteOrder, bigTiff, offset, entries, (int) entryCount));
+
+      offset = bigTiff
+          ? entries.getLong(entriesSize)
+          : Integer.toUnsignedLong(entries.getInt(entriesSize));
+    }
+
+    return ifds;
+  }
+
+  public long offset() {
+    return offset;
+  }
+
+  public boolean contains(int tag) {
+    return indexOf(tag) >= 0;
+  }
+
+  /**
+   * Returns the values of an integer or floating point entry as longs, or null if there is no
+   * such entry.
+   */
+  public long[] longs(int tag) {
+    int index = indexOf(tag);
+
+    if (index < 0) {
+      return null;
+    }
+
+    int type = type(index);
+    int count = count(index);
+    ByteBuffer buffer = values(index);
+    long[] values = new long[count];
+
+    for (int i = 0; i < count; i++) {
+      switch (type) {
+        case TYPE_BYTE:
+        case TYPE_UNDEFINED:
+          values[i] = Byte.toUnsignedLong(buffer.get(i));
+          break;
+        case TYPE_SBYTE:
+          values[i] = buffer.get(i);
+          break;
+        case TYPE_SHORT:
+          values[i] = Short.toUnsignedLong(buffer.getShort(2 * i));
+          break;
+        case TYPE_SSHORT:
+          values[i] = buffer.getShort(2 * i);
+          break;
+        case TYPE_LONG:
+        case TYPE_IFD:
+          values[i] = Integer.toUnsignedLong(buffer.getInt(4 * i));
+          break;
+        case TYPE_SLONG:
+          values[i] = buffer.getInt(4 * i);
+          break;
+        case TYPE_LONG8:
+        case TYPE_SLONG8:
+        case TYPE_IFD8:
+          values[i] = buffer.getLong(8 * i);
+          break;
+        default:
+          values[i] = (long) toDouble(type, buffer, i);
+      }
+    }
+
+    return values;
+  }
+
+  public Long firstLong(int tag) {
+    long[] values = longs(tag);
+
+    if (values == null || values.length == 0) {
+      return null;
+    }
+
+    return values[0];
+  }
+
+  /**
+   * Returns the values of a numeric entry as doubles, or null if there is no such entry.
+   */
+  public double[] doubles(int tag) {
+    int index = indexOf(tag);
+
+    if (index < 0) {
+      return null;
+    }
+
+    int type = type(index);
+
+    switch (type) {
+      case TYPE_RATIONAL:
+      case TYPE_SRATIONAL:
+      case TYPE_FLOAT:
+      case TYPE_DOUBLE:
+        ByteBuffer buffer = values(index);
+        double[] values = new double[count(index)];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = toDouble(type, buffer, i);
+        }
+        return values;
+      default:
+        long[] longs = longs(tag);
+        double[] doubles = new double[longs.length];
+        for (int i = 0; i < longs.length; i++) {
+          doubles[i] = longs[i];
+        }
+        return doubles;
+    }
+  }
+
+  /**
+   * Returns the value of an ASCII entry without trailing NUL characters, or null if there is no
+   * such entry.
+   */
+  public String ascii(int tag) {
+    int index = indexOf(tag);
+
+    if (index < 0) {
+      return null;
+    }
+
+    ByteBuffer buffer = values(index);
+    int length = buffer.remaining();
+    while (length > 0 && buffer.get(length - 1) == 0) {
+      length--;
+    }
+
+    byte[] bytes = new byte[length];
+    buffer.get(0, bytes);
+
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  private static double toDouble(int type, ByteBuffer buffer, int i) {
+    switch (type) {
+      case TYPE_RATIONAL:
+        return Integer.toUnsignedLong(buffer.getInt(8 * i))
+            / (double) Integer.toUnsignedLong(buffer.getInt(8 * i + 4));
+      case TYPE_SRATIONAL:
+        return buffer.getInt(8 * i) / (double) buffer.getInt(8 * i + 4);
+      case TYPE_FLOAT:
+        return buffer.getFloat(4 * i);
+      case TYPE_DOUBLE:
+        return buffer.getDouble(8 * i);
+      default:
+        throw new IllegalArgumentException("TIFF type " + type + " is not a floating point type.");
+    }
+  }
+
+  private int indexOf(int tag) {
+    for (int i = 0; i < entryCount; i++) {
+      if (Short.toUnsignedInt(entries.getShort(entryPosition(i))) == tag) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private int entryPosition(int index) {
+    return index * (bigTiff ? 20 : 12);
+  }
+
+  private int type(int index) {
+    return Short.toUnsignedInt(entries.getShort(entryPosition(index) + 2));
+  }
+
+  private int count(int index) {
+    long count = bigTiff
+        ? entries.getLong(entryPosition(index) + 4)
+        : Integer.toUnsignedLong(entries.getInt(entryPosition(index) + 4));
+
+    return Math.toIntExact(count);
+  }
+
+  private ByteBuffer values(int index) {
+    int type = type(index);
+    if (type >= TYPE_SIZES.length || TYPE_SIZES[type] == 0) {
+      throw new IllegalArgumentException("Unknown TIFF type " + type + ".");
+    }
+
+    long size = (long) count(index) * TYPE_SIZES[type];
+    int valuePosition = entryPosition(index) + (bigTiff ? 12 : 8);
+
+    if (size <= (bigTiff ? 8 : 4)) {
+      return entries.slice(valuePosition, (int) size).order(byteOrder);
+    }
+
+    long valueOffset = bigTiff
+        ? entries.getLong(valuePosition)
+        : Integer.toUnsignedLong(entries.getInt(valuePosition));
+
+    try {
+      return source.read(valueOffset, Math.toIntExact(size)).order(byteOrder);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import com.sinergise.sentinel.byoctool.tiff.TiffDirectory.Scale;
+import com.sinergise.sentinel.byoctool.tiff.TiffDirectory.TiePoint;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.imageio.stream.ImageInputStream;
+import lombok.Value;
+import lombok.experimental.Accessors;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Immutable summary of a TIFF header: the georeferencing and sample format of the main image and
+ * the size and tile layout of every image, including overviews and masks.
+ */
+@Value
+@Accessors(fluent = true)
+public class TiffMetadata {
+
+  List<Image> images;
+  int sampleFormat;
+  int bitsPerSample;
+  Scale scale;
+  TiePoint modelTiePoint;
+  String noDataValue;
+  String geoAsciiParams;
+  boolean hasGeoKeyDirectory;
+  Integer epsgCode;
+
+  public static TiffMetadata read(Path path) throws IOException {
+    try (TiffSource source = new FileTiffSource(path)) {
+      return read(source);
+    }
+  }
+
+  public static TiffMetadata read(ImageInputStream iis) throws IOException {
+    return read(new ImageInputStreamTiffSource(iis));
+  }
+
+  public static TiffMetadata read(TiffSource source) throws IOException {
+    TiffCompoundDirectory compoundDirectory = new TiffCompoundDirectory(source);
+
+    List<Image> images = new ArrayList<>();
+    for (int i = 0; i < compoundDirectory.directoryCount(); i++) {
+      images.add(Image.of(compoundDirectory.directory(i)));
+    }
+
+    return new TiffMetadata(
+        Collections.unmodifiableList(images),
+        compoundDirectory.sampleFormat(),
+        compoundDirectory.bitsPerSample(),
+        compoundDirectory.scale(),
+        compoundDirectory.modelTiePoint(),
+        compoundDirectory.noDataValue(),
+        compoundDirectory.geoAsciiParams(),
+        compoundDirectory.geoKeyDirectory() != null,
+        compoundDirectory.epsgCode());
+  }
+
+  public Long imageWidth() {
+    return images.get(0).width();
+  }
+
+  public Long imageHeight() {
+    return images.get(0).height();
+  }
+
+  public int directoryCount() {
+    return images.size();
+  }
+
+  public Integer noDataValueAsInt() {
+    if (noDataValue == null) {
+      return null;
+    }
+
+    return Integer.parseInt(noDataValue);
+  }
+
+  /**
+   * Parses the GDAL no-data value the way GDAL does, accepting "nan", "inf" and "-inf" in any
+   * case besides regular numbers.
+   */
+  public Double noDataValueAsDouble() {
+    if (noDataValue == null) {
+      return null;
+    }
+
+    String value = noDataValue.trim().toLowerCase(Locale.ROOT);
+    switch (value) {
+      case "nan":
+      case "-nan":
+        return Double.NaN;
+      case "inf":
+      case "+inf":
+        return Double.POSITIVE_INFINITY;
+      case "-inf":
+        return Double.NEGATIVE_INFINITY;
+      default:
+        return Double.parseDouble(value);
+    }
+  }
+
+  public Envelope envelope() {
+    double minX = modelTiePoint.x();
+    double maxY = modelTiePoint.y();
+    double maxX = minX + scale.x() * imageWidth();
+    double minY = maxY - scale.y() * imageHeight();
+
+    return new Envelope(minX, maxX, minY, maxY);
+  }
+
+  @Value
+  @Accessors(fluent = true)
+  public static class Image {
+
+    long ifdOffset;
+    Long width;
+    Long height;
+    Long tileWidth;
+    Long tileHeight;
+    boolean tiled;
+    boolean mask;
+
+    /** Offset of the first tile with data, 0 if no tile has data. */
+    long firstTileOffset;
+
+    /** Lowest offset of any tile with data, 0 if no tile has data. */
+    long minTileOffset;
+
+    /** Offsets of tiles, null if the image is not tiled. Tiles left out of the file have 0. */
+    long[] tileOffsets;
+
+    /** Sizes of tiles in bytes, null if not known. Tiles left out of the file have 0. */
+    long[] tileByteCounts;
+
+    // images are cached and shared, so only copies of the arrays are handed out
+
+    public long[] tileOffsets() {
+      return tileOffsets == null ? null : tileOffsets.clone();
+    }
+
+    public long[] tileByteCounts() {
+      return tileByteCounts == null ? null : tileByteCounts.clone();
+    }
+
+    static Image of(TiffDirectory directory) {
+      long[] tileOffsets = directory.tileOffsets();
+      long firstTileOffset = 0;
+      long minTileOffset = 0;
+
+      if (tileOffsets != null) {
+        for (long tileOffset : tileOffsets) {
+          // sparse tiles have no data
+          if (tileOffset == 0) {
+            continue;
+          }
+
+          if (firstTileOffset == 0) {
+            firstTileOffset = tileOffset;
+          }
+
+          if (minTileOffset == 0 || tileOffset < minTileOffset) {
+            minTileOffset = tileOffset;
+          }
+        }
+      }
+
+      return new Image(
+          directory.ifdOffset(),
+          directory.imageWidth(),
+          directory.imageHeight(),
+          directory.tileWidth(),
+          directory.tileHeight(),
+          tileOffsets != null,
+          directory.isMask(),
+          firstTileOffset,
+          minTileOffset,
+          tileOffsets,
+          directory.tileByteCounts());
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Value;
+
+/**
+ * Caches TIFF metadata per file, so the header of a file is read only once even though it is
+ * needed by validation, COG creation and coverage tracing. An entry is reused only while the
+ * file has the same size and modification time.
+ */
+public class TiffMetadataRegistry {
+
+  private static final int MAX_ENTRIES = 10_000;
+
+  private static final Map<FileStamp, TiffMetadata> entries =
+      Collections.synchronizedMap(new LinkedHashMap<FileStamp, TiffMetadata>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FileStamp, TiffMetadata> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      });
+
+  public static TiffMetadata get(Path path) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    FileStamp stamp = new FileStamp(
+        path.toAbsolutePath().normalize(),
+        attributes.size(),
+        attributes.lastModifiedTime());
+
+    TiffMetadata metadata = entries.get(stamp);
+    if (metadata == null) {
+      metadata = TiffMetadata.read(path);
+      entries.put(stamp, metadata);
+    }
+
+    return metadata;
+  }
+
+  @Value
+  private static class FileStamp {
+
+    Path path;
+    long size;
+    FileTime lastModified;
+  }
+}
@@ -0,0 +1,16 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to the bytes of a TIFF file, which may be local or remote.
+ */
+public interface TiffSource extends Closeable {
+
+  /**
+   * Returns a buffer with exactly {@code length} bytes starting at {@code offset}.
+   */
+  ByteBuffer read(long offset, int length) throws IOException;
+}
@@ -0,0 +1,430 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sinergise.sentinel.byoctool.cli.CoverageTracingConfig;
+import com.sinergise.sentinel.byoctool.cli.CoverageTracingConfig.TracingEngine;
+import com.sinergise.sentinel.byoctool.tiff.TestTiffWriter;
+import com.sinergise.sentinel.byoctool.tiff.TiffDirectory;
+import com.sinergise.sentinel.byoctool.tiff.TiffDirectory.SampleFormat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+class CoverageCalculatorTest {
+
+  private static final int WIDTH = 40;
+  private static final int HEIGHT = 30;
+  private static final double PIXEL_SIZE = 10;
+  private static final double MIN_X = 500000;
+  private static final double MAX_Y = 5000000;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void tracesValidPixelsAcrossTiles() throws IOException {
+    Path file = writeImage("a.tiff", 8, SampleFormat.UINT, "0", rectangle(5, 3, 20, 25, 7));
+
+    Geometry coverage = trace(file);
+
+    assertEquals(15 * 22 * PIXEL_SIZE * PIXEL_SIZE, coverage.getArea(), 1e-6);
+    assertEquals(
+        new Envelope(MIN_X + 50, MIN_X + 200, MAX_Y - 250, MAX_Y - 30),
+        coverage.getEnvelopeInternal());
+    assertEquals(32633, coverage.getSRID());
+  }
+
+  @Test
+  void tracesStripsInParallel() throws IOException {
+    double[] pixels = rectangle(5, 3, 20, 25, 7);
+    // a hole in the second strip and a part touching the first one only at a corner
+    for (int y = 18; y < 20; y++) {
+      for (int x = 8; x < 10; x++) {
+        pixels[y * WIDTH + x] = 0;
+      }
+    }
+    pixels[2 * WIDTH + 4] = 7;
+    Path file = writeImage("a.tiff", 8, SampleFormat.UINT, "0", pixels);
+
+    Geometry coverage = trace(new CoverageTracingConfig().setTracingThreads(4), file);
+
+    assertEquals((15 * 22 - 4 + 1) * PIXEL_SIZE * PIXEL_SIZE, coverage.getArea(), 1e-6);
+    assertEquals(trace(file), coverage);
+  }
+
+  @Test
+  void contourEngineMatchesRunsEngine() throws IOException {
+    double[] pixels = rectangle(5, 3, 20, 25, 7);
+    pixels[10 * WIDTH + 10] = 0;
+    pixels[2 * WIDTH + 4] = 7;
+    Path file = writeImage("a.tiff", 8, SampleFormat.UINT, "0", pixels);
+
+    Geometry contour = trace(
+        new CoverageTracingConfig().setTracingEngine(TracingEngine.CONTOUR), file);
+
+    assertTrue(contour.isValid());
+    assertTrue(contour.symDifference(trace(file)).isEmpty());
+    assertEquals(32633, contour.getSRID());
+  }
+
+  @Test
+  void keepsMasksInFilesOfMaskDirectory() throws IOException {
+    Path maskDirectory = Files.createDirectory(tempDir.resolve("masks"));
+    double[] pixels = rectangle(5, 3, 20, 25, 7);
+    pixels[10 * WIDTH + 10] = 0;
+    Path first = writeImage("a.tiff", 8, SampleFormat.UINT, "0", pixels);
+    Path second = writeImage("b.tiff", 8, SampleFormat.UINT, "0", rectangle(0, 0, 10, 30, 1));
+
+    for (TracingEngine engine : TracingEngine.values()) {
+      Geometry coverage = trace(
+          new CoverageTracingConfig().setMaskDirectory(maskDirectory).setTracingEngine(engine),
+          first, second);
+
+      assertTrue(coverage.symDifference(trace(first, second)).isEmpty(), engine::name);
+      try (Stream<Path> files = Files.list(maskDirectory)) {
+        assertEquals(0, files.count());
+      }
+    }
+  }
+
+  @Test
+  void intersectsBands() throws IOException {
+    Path first = writeImage("a.tiff", 8, SampleFormat.UINT, "0", rectangle(0, 0, 20, 20, 1));
+    Path second = writeImage("b.tiff", 16, SampleFormat.UINT, "0", rectangle(10, 10, 40, 30, 300));
+
+    Geometry coverage = trace(first, second);
+
+    assertEquals(10 * 10 * PIXEL_SIZE * PIXEL_SIZE, coverage.getArea(), 1e-6);
+  }
+
+  @Test
+  void tracesFloatImageWithNanNoData() throws IOException {
+    double[] pixels = rectangle(5, 3, 20, 25, 0.5);
+    for (int i = 0; i < pixels.length; i++) {
+      if (pixels[i] == 0) {
+        pixels[i] = Double.NaN;
+      }
+    }
+    Path file = writeImage("a.tiff", 32, SampleFormat.IEEEFP, "nan", pixels);
+
+    assertEquals(15 * 22 * PIXEL_SIZE * PIXEL_SIZE, trace(file).getArea(), 1e-6);
+  }
+
+  @Test
+  void noDataOutOfSampleRangeMatchesNothing() throws IOException {
+    Path file = writeImage("a.tiff", 8, SampleFormat.UINT, "-9999", rectangle(5, 3, 20, 25, 7));
+
+    assertEquals(WIDTH * HEIGHT * PIXEL_SIZE * PIXEL_SIZE, trace(file).getArea(), 1e-6);
+  }
+
+  @Test
+  void imageWithoutNoDataCoversEnvelope() throws IOException {
+    Path file = writeImage("a.tiff", 8, SampleFormat.UINT, null, new double[WIDTH * HEIGHT]);
+
+    assertEquals(
+        new Envelope(MIN_X, MIN_X + WIDTH * PIXEL_SIZE, MAX_Y - HEIGHT * PIXEL_SIZE, MAX_Y),
+        trace(file).getEnvelopeInternal());
+    assertEquals(WIDTH * HEIGHT * PIXEL_SIZE * PIXEL_SIZE, trace(file).getArea(), 1e-6);
+  }
+
+  @Test
+  void intersectsBandsOnDifferentGrids() throws IOException {
+    Path first = writeImage("a.tiff", 8, SampleFormat.UINT, "0", rectangle(0, 0, 20, 20, 1));
+    double[] coarsePixels = new double[WIDTH / 2 * HEIGHT / 2];
+    for (int y = 5; y < HEIGHT / 2; y++) {
+      for (int x = 5; x < WIDTH / 2; x++) {
+        coarsePixels[y * WIDTH / 2 + x] = 1;
+      }
+    }
+    Path second = writeImage(
+        "b.tiff", WIDTH / 2, HEIGHT / 2, 2 * PIXEL_SIZE, 8, SampleFormat.UINT, "0", coarsePixels);
+
+    Geometry coverage = trace(first, second);
+
+    assertEquals(10 * 10 * PIXEL_SIZE * PIXEL_SIZE, coverage.getArea(), 1e-6);
+  }
+
+  @Test
+  void tracesBandsInParallel() throws IOException {
+    Path first = writeImage("a.tiff", 8, SampleFormat.UINT, "0", rectangle(0, 0, 20, 20, 1));
+    Path second = writeImage("b.tiff", 8, SampleFormat.UINT, "0", rectangle(10, 5, 40, 30, 1));
+    double[] coarsePixels = new double[WIDTH / 2 * HEIGHT / 2];
+    for (int y = 2; y < HEIGHT / 2; y++) {
+      for (int x = 0; x < WIDTH / 2; x++) {
+        coarsePixels[y * WIDTH / 2 + x] = 1;
+      }
+    }
+    Path coarse = writeImage(
+        "c.tiff", WIDTH / 2, HEIGHT / 2, 2 * PIXEL_SIZE, 8, SampleFormat.UINT, "0", coarsePixels);
+    Path third = writeImage("d.tiff", 8, SampleFormat.UINT, "0", rectangle(0, 0, 15, 30, 1));
+    List<Path> files = Arrays.asList(first, coarse, second, third);
+
+    try (CoverageCalculator calculator =
+        new CoverageCalculator(new CoverageTracingConfig().setTracingThreads(4))) {
+      calculator.addImages(files);
+      Geometry coverage = calculator.getCoverage();
+
+      assertEquals(5 * 15, area(coverage), 1e-6);
+      assertTrue(coverage.symDifference(trace(files.toArray(new Path[0]))).isEmpty());
+      assertEquals(32633, coverage.getSRID());
+    }
+  }
+
+  @Test
+  void addsImagesFromSeveralThreads() throws Exception {
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      files.add(writeImage(
+          i + ".tiff", 8, SampleFormat.UINT, "0", rectangle(i, 0, WIDTH, HEIGHT - i, 1)));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (CoverageCalculator calculator = new CoverageCalculator(new CoverageTracingConfig())) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Path file : files) {
+        futures.add(executor.submit(() -> {
+          calculator.addImage(file);
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+
+      assertEquals((WIDTH - 7) * (HEIGHT - 7), area(calculator.getCoverage()), 1e-6);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void shrinksCoverageAwayFromTileEdges() throws IOException {
+    Path inside = writeImage("a.tiff", 8, SampleFormat.UINT, "0", rectangle(5, 3, 20, 25, 7));
+    Path corner = writeImage("b.tiff", 8, SampleFormat.UINT, "0", rectangle(0, 0, 20, 25, 7));
+    CoverageTracingConfig config = new CoverageTracingConfig().setNegativeBufferInPixels(2);
+
+    assertEquals(11 * 18, area(trace(config, inside)), 1e-6);
+    assertEquals(18 * 23, area(trace(config, corner)), 1e-6);
+  }
+
+  @Test
+  void pyramidalTracingDecodesTileRowsOnOverviewBoundaries() throws IOException {
+    double[] pixels = rectangle(0, 5, WIDTH, HEIGHT, 1);
+    double[] overviewPixels = new double[10 * 8];
+    for (int i = 10; i < overviewPixels.length; i++) {
+      overviewPixels[i] = 1;
+    }
+    // a hole in a row of tiles the overview has as wholly valid
+    for (int y = 26; y < 28; y++) {
+      for (int x = 36; x < 38; x++) {
+        pixels[y * WIDTH + x] = 0;
+      }
+    }
+
+    TestTiffWriter writer = new TestTiffWriter();
+    georeference(writer.addImage(WIDTH, HEIGHT, 16).pixels(8, SampleFormat.UINT, pixels), "0");
+    writer.addImage(10, 8, 16).pixels(8, SampleFormat.UINT, overviewPixels);
+    Path file = writer.write(tempDir.resolve("a.tiff"));
+
+    Geometry exact = trace(file);
+    Geometry pyramidal = trace(new CoverageTracingConfig().setPyramidal(true), file);
+
+    assertEquals((40 * 25 - 4) * PIXEL_SIZE * PIXEL_SIZE, exact.getArea(), 1e-6);
+    assertEquals(40 * 25 * PIXEL_SIZE * PIXEL_SIZE, pyramidal.getArea(), 1e-6);
+    assertEquals(exact.getEnvelopeInternal(), pyramidal.getEnvelopeInternal());
+  }
+
+  @Test
+  void emptyTilesOfSparseFilesAreInvalid() throws IOException {
+    double[] pixels = rectangle(0, 0, WIDTH, HEIGHT, 1);
+    for (int y = 0; y < 16; y++) {
+      for (int x = 16; x < 32; x++) {
+        pixels[y * WIDTH + x] = 0;
+      }
+    }
+
+    TestTiffWriter writer = new TestTiffWriter();
+    georeference(
+        writer.addImage(WIDTH, HEIGHT, 16).pixels(8, SampleFormat.UINT, pixels).sparse(1), "0");
+    Path file = writer.write(tempDir.resolve("a.tiff"));
+
+    for (TracingEngine engine : TracingEngine.values()) {
+      Geometry coverage = trace(new CoverageTracingConfig().setTracingEngine(engine), file);
+
+      assertEquals(WIDTH * HEIGHT - 16 * 16, area(coverage), 1e-6, engine::name);
+    }
+  }
+
+  @Test
+  void tracesMaskWrittenByGdal() throws IOException {
+    Path file = writeImage("a.tiff", 8, SampleFormat.UINT, "0", rectangle(5, 3, 20, 25, 7));
+    Path mask = writeMask("a.tiff.msk", WIDTH, HEIGHT, rectangle(0, 0, 10, 10, 255));
+
+    try (CoverageCalculator calculator = new CoverageCalculator(new CoverageTracingConfig())) {
+      calculator.addImage(file, mask);
+
+      assertEquals(10 * 10, area(calculator.getCoverage()), 1e-6);
+    }
+  }
+
+  @Test
+  void tracesImageIfMaskDoesNotMatchIt() throws IOException {
+    Path file = writeImage("a.tiff", 8, SampleFormat.UINT, "0", rectangle(5, 3, 20, 25, 7));
+    Path mask = writeMask("a.tiff.msk", WIDTH / 2, HEIGHT / 2, new double[WIDTH * HEIGHT / 4]);
+
+    try (CoverageCalculator calculator = new CoverageCalculator(new CoverageTracingConfig())) {
+      calculator.addImage(file, mask);
+
+      assertEquals(15 * 22, area(calculator.getCoverage()), 1e-6);
+    }
+  }
+
+  @Test
+  void picksOverviewByPixelBudget() throws IOException {
+    Path file = writeImageWithOverviews();
+
+    assertEquals(WIDTH * HEIGHT - 4, area(trace(new CoverageTracingConfig(), file)), 1e-6);
+    assertEquals(WIDTH * HEIGHT - 4,
+        area(trace(new CoverageTracingConfig().setMaxPixels(WIDTH * HEIGHT), file)), 1e-6);
+    assertEquals(WIDTH * HEIGHT / 2,
+        area(trace(new CoverageTracingConfig().setMaxPixels(300), file)), 1e-6);
+    assertEquals(WIDTH * HEIGHT,
+        area(trace(new CoverageTracingConfig().setMaxPixels(100), file)), 1e-6);
+    assertEquals(WIDTH * HEIGHT,
+        area(trace(new CoverageTracingConfig().setMaxPixels(1), file)), 1e-6);
+  }
+
+  @Test
+  void picksOverviewByTargetResolution() throws IOException {
+    Path file = writeImageWithOverviews();
+
+    assertEquals(WIDTH * HEIGHT - 4,
+        area(trace(new CoverageTracingConfig().setTargetResolution(5), file)), 1e-6);
+    assertEquals(WIDTH * HEIGHT / 2,
+        area(trace(new CoverageTracingConfig().setTargetResolution(20), file)), 1e-6);
+    assertEquals(WIDTH * HEIGHT / 2,
+        area(trace(new CoverageTracingConfig().setTargetResolution(30), file)), 1e-6);
+    assertEquals(WIDTH * HEIGHT,
+        area(trace(new CoverageTracingConfig().setTargetResolution(30).setMaxPixels(100), file)),
+        1e-6);
+  }
+
+  @Test
+  void emptyImage() throws IOException {
+    Path file = writeImage("a.tiff", 8, SampleFormat.UINT, "0", new double[WIDTH * HEIGHT]);
+
+    assertTrue(trace(file).isEmpty());
+  }
+
+  /**
+   * Writes an image with a hole and two overviews, the first of them with the left half invalid
+   * and the second one wholly valid.
+   */
+  private Path writeImageWithOverviews() throws IOException {
+    double[] pixels = rectangle(0, 0, WIDTH, HEIGHT, 1);
+    pixels[10 * WIDTH + 10] = 0;
+    pixels[10 * WIDTH + 11] = 0;
+    pixels[11 * WIDTH + 10] = 0;
+    pixels[11 * WIDTH + 11] = 0;
+    double[] firstOverview = new double[20 * 15];
+    for (int i = 0; i < firstOverview.length; i++) {
+      firstOverview[i] = i % 20 < 10 ? 0 : 1;
+    }
+    double[] secondOverview = new double[10 * 8];
+    Arrays.fill(secondOverview, 1);
+
+    TestTiffWriter writer = new TestTiffWriter();
+    georeference(writer.addImage(WIDTH, HEIGHT, 16).pixels(8, SampleFormat.UINT, pixels), "0");
+    writer.addImage(20, 15, 16).pixels(8, SampleFormat.UINT, firstOverview);
+    writer.addImage(10, 8, 16).pixels(8, SampleFormat.UINT, secondOverview);
+    return writer.write(tempDir.resolve("a.tiff"));
+  }
+
+  /** Returns the area of the geometry in pixels of the main image. */
+  private static double area(Geometry geometry) {
+    return geometry.getArea() / (PIXEL_SIZE * PIXEL_SIZE);
+  }
+
+  private Geometry trace(Path... files) throws IOException {
+    return trace(new CoverageTracingConfig(), files);
+  }
+
+  private Geometry trace(CoverageTracingConfig config, Path... files) throws IOException {
+    try (CoverageCalculator calculator = new CoverageCalculator(config)) {
+      for (Path file : files) {
+        calculator.addImage(file);
+      }
+
+      return calculator.getCoverage();
+    }
+  }
+
+  static double[] rectangle(int minX, int minY, int maxX, int maxY, double value) {
+    double[] pixels = new double[WIDTH * HEIGHT];
+
+    for (int y = minY; y < maxY; y++) {
+      for (int x = minX; x < maxX; x++) {
+        pixels[y * WIDTH + x] = value;
+      }
+    }
+
+    return pixels;
+  }
+
+  private Path writeImage(
+      String name, int bitsPerSample, int sampleFormat, String noData, double[] pixels)
+      throws IOException {
+    return writeImage(
+        name, WIDTH, HEIGHT, PIXEL_SIZE, bitsPerSample, sampleFormat, noData, pixels);
+  }
+
+  private Path writeImage(
+      String name, int width, int height, double pixelSize, int bitsPerSample, int sampleFormat,
+      String noData, double[] pixels) throws IOException {
+
+    TestTiffWriter writer = new TestTiffWriter();
+    georeference(
+        writer.addImage(width, height, 16).pixels(bitsPerSample, sampleFormat, pixels),
+        pixelSize,
+        noData);
+
+    return writer.write(tempDir.resolve(name));
+  }
+
+  /** Writes a mask without georeferencing or no-data value, like GDAL does. */
+  private Path writeMask(String name, int width, int height, double[] pixels)
+      throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(width, height, 16).pixels(8, SampleFormat.UINT, pixels);
+
+    return writer.write(tempDir.resolve(name));
+  }
+
+  private static void georeference(TestTiffWriter.Image image, String noData) {
+    georeference(image, PIXEL_SIZE, noData);
+  }
+
+  private static void georeference(TestTiffWriter.Image image, double pixelSize, String noData) {
+    image
+        .set(TiffDirectory.TAG_MODEL_PIXEL_SCALE, new double[] {pixelSize, pixelSize, 0})
+        .set(TiffDirectory.TAG_MODEL_TIE_POINT, new double[] {0, 0, 0, MIN_X, MAX_Y, 0})
+        .set(TiffDirectory.TAG_GEO_KEY_DIRECTORY,
+            new int[] {1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, 32633});
+    if (noData != null) {
+      image.set(TiffDirectory.TAG_GDAL_NO_DATA_VALUE, noData);
+    }
+  }
+}
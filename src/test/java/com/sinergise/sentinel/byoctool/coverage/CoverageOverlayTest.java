@@ -0,0 +1,53 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKTReader;
+
+class CoverageOverlayTest {
+
+  private final GeometryFactory factory = new GeometryFactory();
+
+  @Test
+  void snapsNearlyCoincidentEdgesToTheGrid() {
+    Geometry a = factory.toGeometry(new Envelope(500000, 500100, 5000000, 5000100));
+    Geometry b = factory.toGeometry(
+        new Envelope(500000 + 1e-7, 500100 - 1e-7, 4999950, 5000100 - 1e-7));
+
+    Geometry intersection =
+        CoverageOverlay.intersection(a, b, CoverageOverlay.precisionModel(10));
+
+    assertTrue(intersection.isValid());
+    assertEquals(5, intersection.getNumPoints());
+    assertEquals(100 * 100, intersection.getArea(), 1e-9);
+    for (Coordinate coordinate : intersection.getCoordinates()) {
+      assertEquals(Math.rint(coordinate.x * 100) / 100, coordinate.x, 0);
+      assertEquals(Math.rint(coordinate.y * 100) / 100, coordinate.y, 0);
+    }
+  }
+
+  @Test
+  void snapsBufferToTheGrid() throws Exception {
+    Geometry holes = new WKTReader(factory).read(
+        "MULTIPOLYGON (((500000 5000000, 500030 5000000, 500030 5000010.0000001, 500000 5000010,"
+            + " 500000 5000000)), ((500040 5000000, 500050 5000000, 500050 5000010,"
+            + " 500040 5000010, 500040 5000000)))");
+
+    Geometry buffer = CoverageOverlay.buffer(holes, 10, CoverageOverlay.precisionModel(10));
+
+    assertTrue(buffer.isValid());
+    assertEquals(new Envelope(499990, 500060, 4999990, 5000020), buffer.getEnvelopeInternal());
+    // mitred corners, the gap between the holes is closed
+    assertEquals(70 * 30, buffer.getArea(), 1e-6);
+    for (Coordinate coordinate : buffer.getCoordinates()) {
+      assertEquals(Math.rint(coordinate.x * 100) / 100, coordinate.x, 0);
+      assertEquals(Math.rint(coordinate.y * 100) / 100, coordinate.y, 0);
+    }
+  }
+}
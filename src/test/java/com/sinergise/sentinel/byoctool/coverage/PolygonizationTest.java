@@ -0,0 +1,160 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sinergise.sentinel.byoctool.coverage.Vectorization.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
+
+/** Cases shared by the engines which turn a mask directly into polygons. */
+class PolygonizationTest {
+
+  private static final AffineTransform AFFINE = new AffineTransform(10, -10, 500000, 5000000);
+
+  enum Engine {
+    CONTOUR(ContourTracer::trace),
+    SCANLINE(ScanlinePolygonizer::polygonize);
+
+    private final BiFunction<ValidMask, AffineTransform, Geometry> polygonizer;
+
+    Engine(BiFunction<ValidMask, AffineTransform, Geometry> polygonizer) {
+      this.polygonizer = polygonizer;
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(Engine.class)
+  void emptyMask(Engine engine) {
+    try (ValidMask mask = mask("...", "...")) {
+      assertNull(engine.polygonizer.apply(mask, AFFINE));
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(Engine.class)
+  void squareWithHole(Engine engine) {
+    Geometry geometry = polygonize(engine,
+        "....",
+        ".###",
+        ".#.#",
+        ".###");
+
+    assertTrue(geometry instanceof Polygon);
+    assertEquals(1, ((Polygon) geometry).getNumInteriorRing());
+    assertEquals(4, ((Polygon) geometry).getExteriorRing().getNumPoints() - 1);
+    assertEquals(new Envelope(500010, 500040, 4999960, 4999990), geometry.getEnvelopeInternal());
+  }
+
+  @ParameterizedTest
+  @EnumSource(Engine.class)
+  void diagonalPixelsAreSeparatePolygons(Engine engine) {
+    Geometry geometry = polygonize(engine,
+        "#.",
+        ".#");
+
+    assertEquals(2, geometry.getNumGeometries());
+  }
+
+  @ParameterizedTest
+  @EnumSource(Engine.class)
+  void ringPinchedAtCorner(Engine engine) {
+    polygonize(engine,
+        "###.",
+        "#..#",
+        "#.##",
+        "###.");
+  }
+
+  @ParameterizedTest
+  @EnumSource(Engine.class)
+  void islandInHole(Engine engine) {
+    Geometry geometry = polygonize(engine,
+        "#####",
+        "#...#",
+        "#.#.#",
+        "#...#",
+        "#####");
+
+    assertEquals(2, geometry.getNumGeometries());
+  }
+
+  static Stream<Arguments> enginesAndSeeds() {
+    return Stream.of(Engine.values())
+        .flatMap(engine -> Stream.of(1, 2, 3, 4, 5, 6, 7, 8)
+            .map(seed -> Arguments.of(engine, seed)));
+  }
+
+  @ParameterizedTest
+  @MethodSource("enginesAndSeeds")
+  void matchesUnionOfPixels(Engine engine, int seed) {
+    Random random = new Random(seed);
+    String[] rows = new String[40];
+
+    for (int y = 0; y < rows.length; y++) {
+      StringBuilder row = new StringBuilder();
+      for (int x = 0; x < 70; x++) {
+        row.append(random.nextInt(100) < 45 + seed * 5 ? '#' : '.');
+      }
+      rows[y] = row.toString();
+    }
+
+    polygonize(engine, rows);
+  }
+
+  /** Polygonizes the mask and checks the result is valid and equal to the union of its pixels. */
+  static Geometry polygonize(Engine engine, String... rows) {
+    Geometry geometry;
+    try (ValidMask mask = mask(rows)) {
+      geometry = engine.polygonizer.apply(mask, AFFINE);
+    }
+
+    GeometryFactory geometryFactory = new GeometryFactory();
+    List<Geometry> pixels = new ArrayList<>();
+
+    for (int y = 0; y < rows.length; y++) {
+      for (int x = 0; x < rows[y].length(); x++) {
+        if (rows[y].charAt(x) == '#') {
+          pixels.add(geometryFactory.toGeometry(new Envelope(
+              500000 + x * 10, 500000 + (x + 1) * 10, 5000000 - y * 10, 5000000 - (y + 1) * 10)));
+        }
+      }
+    }
+    Geometry expected = new CascadedPolygonUnion(pixels).union();
+
+    assertTrue(geometry.isValid(), geometry::toText);
+    assertEquals(expected.getArea(), geometry.getArea(), 1e-6);
+    assertTrue(geometry.symDifference(expected).isEmpty(), geometry::toText);
+    return geometry;
+  }
+
+  private static ValidMask mask(String... rows) {
+    ValidMask mask = new ValidMask(rows[0].length(), rows.length);
+    long[] rowBits = new long[RowBits.words(rows[0].length())];
+
+    for (int y = 0; y < rows.length; y++) {
+      RowBits.clear(rowBits, rows[y].length());
+      for (int x = 0; x < rows[y].length(); x++) {
+        if (rows[y].charAt(x) == '#') {
+          rowBits[x >>> 6] |= 1L << x;
+        }
+      }
+      mask.setRow(y, rowBits);
+    }
+
+    return mask;
+  }
+}
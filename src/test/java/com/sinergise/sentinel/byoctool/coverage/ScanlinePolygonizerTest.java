@@ -0,0 +1,47 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import static com.sinergise.sentinel.byoctool.coverage.PolygonizationTest.polygonize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sinergise.sentinel.byoctool.coverage.PolygonizationTest.Engine;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+/** Cases of merging runs across rows, see {@link PolygonizationTest} for the shared ones. */
+class ScanlinePolygonizerTest {
+
+  @Test
+  void mergesRunsOfConsecutiveRows() {
+    Geometry geometry = polygonize(Engine.SCANLINE,
+        ".##..",
+        ".###.",
+        "..##.",
+        "#####");
+
+    assertTrue(geometry instanceof Polygon);
+    assertEquals(12, ((Polygon) geometry).getExteriorRing().getNumPoints() - 1);
+  }
+
+  @Test
+  void ringPinchedAtTwoCorners() {
+    polygonize(Engine.SCANLINE,
+        "#####.",
+        "#.#..#",
+        "#..#.#",
+        "#.##.#",
+        "####.#",
+        "....#.");
+  }
+
+  @Test
+  void runsAcrossWords() {
+    String full = "#".repeat(128);
+    String gap = "#".repeat(63) + ".".repeat(2) + "#".repeat(63);
+
+    Geometry geometry = polygonize(Engine.SCANLINE, full, gap, full);
+
+    assertEquals(1, ((Polygon) geometry).getNumInteriorRing());
+  }
+}
@@ -0,0 +1,88 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.sinergise.sentinel.byoctool.tiff.TestTiffWriter;
+import com.sinergise.sentinel.byoctool.tiff.TiffDirectory.SampleFormat;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata;
+import com.twelvemonkeys.imageio.metadata.tiff.TIFF;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TileContentsTest {
+
+  private static final int SIZE = 48;
+  private static final int TILE_SIZE = 16;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void learnsValidityOfTilesWithTheSameBytes() throws IOException {
+    double[] pixels = new double[SIZE * SIZE];
+    // valid, mixed and invalid tiles in the first row, the same valid and invalid tiles in the
+    // other rows, a mixed tile different from the first one and an empty tile
+    fill(pixels, 0, 0, 1);
+    fill(pixels, 1, 0, 1);
+    pixels[5 * SIZE + TILE_SIZE + 5] = 0;
+    fill(pixels, 0, 1, 1);
+    fill(pixels, 0, 2, 1);
+    pixels[2 * TILE_SIZE * SIZE + 7] = 0;
+    fill(pixels, 1, 2, 1);
+
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(SIZE, SIZE, TILE_SIZE).pixels(8, SampleFormat.UINT, pixels).sparse(5);
+    Path file = writer.write(tempDir.resolve("a.tiff"));
+
+    try (ImageInputStream iis = ImageIO.createImageInputStream(file.toFile());
+        ValidMask mask = new ValidMask(SIZE, SIZE)) {
+      TiffMetadata metadata = TiffMetadata.read(iis);
+      TileContents contents = TileContents.read(iis, metadata.images().get(0));
+
+      assertNull(contents.uniformValidity(0, 1));
+      assertFalse(contents.uniformValidity(2, 1));
+
+      for (int y = 0; y < 2 * TILE_SIZE; y++) {
+        for (int x = 0; x < SIZE; x++) {
+          if (pixels[y * SIZE + x] != 0 || y >= TILE_SIZE) {
+            mask.set(x, y);
+          }
+        }
+      }
+      contents.decoded(mask, 0);
+      contents.decoded(mask, 1);
+
+      assertEquals(true, contents.uniformValidity(0, 1));
+      assertEquals(false, contents.uniformValidity(1, 1));
+      assertEquals(true, contents.uniformValidity(1, 2));
+      assertEquals(false, contents.uniformValidity(2, 2));
+      assertNull(contents.uniformValidity(0, 2));
+      assertEquals(false, mask.uniformValidity(2 * TILE_SIZE, TILE_SIZE, SIZE, 2 * TILE_SIZE));
+    }
+  }
+
+  @Test
+  void imageWithoutTileOffsetsHasNoContents() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(SIZE, SIZE, TILE_SIZE).remove(TIFF.TAG_TILE_OFFSETS);
+    Path file = writer.write(tempDir.resolve("a.tiff"));
+
+    try (ImageInputStream iis = ImageIO.createImageInputStream(file.toFile())) {
+      assertNull(TileContents.read(iis, TiffMetadata.read(iis).images().get(0)));
+    }
+  }
+
+  private static void fill(double[] pixels, int column, int row, double value) {
+    for (int y = row * TILE_SIZE; y < (row + 1) * TILE_SIZE; y++) {
+      for (int x = column * TILE_SIZE; x < (column + 1) * TILE_SIZE; x++) {
+        pixels[y * SIZE + x] = value;
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ValidMaskTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void setsRangesAcrossWords() {
+    try (ValidMask mask = new ValidMask(200, 3)) {
+      mask.setRange(1, 60, 130);
+      mask.setRange(2, 3, 5);
+      mask.setRange(2, 5, 5);
+
+      for (int x = 0; x < 200; x++) {
+        assertFalse(mask.get(x, 0));
+        assertEquals(x >= 60 && x < 130, mask.get(x, 1), "x = " + x);
+        assertEquals(x >= 3 && x < 5, mask.get(x, 2), "x = " + x);
+      }
+      assertFalse(mask.get(-1, 1));
+      assertFalse(mask.get(200, 1));
+      assertFalse(mask.get(60, 3));
+    }
+  }
+
+  @Test
+  void copiesRows() {
+    try (ValidMask mask = new ValidMask(100, 2)) {
+      long[] row = {0x8000_0000_0000_0001L, 0xF0L};
+      mask.setRow(1, row);
+
+      long[] copy = new long[RowBits.words(100)];
+      mask.getRow(1, copy);
+
+      assertArrayEquals(row, copy);
+      assertTrue(mask.get(0, 1));
+      assertTrue(mask.get(63, 1));
+      assertTrue(mask.get(68, 1));
+      assertFalse(mask.get(1, 1));
+    }
+  }
+
+  @Test
+  void combinesMasks() {
+    try (ValidMask mask = new ValidMask(70, 2); ValidMask other = new ValidMask(70, 2)) {
+      mask.setRange(0, 0, 70);
+      mask.setRange(1, 10, 20);
+      other.setRange(0, 65, 70);
+      other.set(15, 1);
+
+      mask.and(other);
+
+      for (int x = 0; x < 70; x++) {
+        assertEquals(x >= 65, mask.get(x, 0), "x = " + x);
+        assertEquals(x == 15, mask.get(x, 1), "x = " + x);
+      }
+    }
+  }
+
+  @Test
+  void rejectsMasksOfOtherSize() {
+    try (ValidMask mask = new ValidMask(70, 2); ValidMask other = new ValidMask(70, 3)) {
+      assertThrows(IllegalArgumentException.class, () -> mask.and(other));
+    }
+  }
+
+  @Test
+  void storesBitsOnHeap() {
+    try (ValidMask mask = ValidMask.onHeap(200, 3); ValidMask other = mask.allocateAlike(200, 3)) {
+      mask.setRange(1, 60, 130);
+      mask.set(199, 2);
+      other.setRange(1, 0, 100);
+      other.setRange(2, 0, 200);
+      other.clearRange(2, 10, 190);
+
+      mask.and(other);
+
+      long[] row = new long[RowBits.words(200)];
+      mask.getRow(1, row);
+      assertArrayEquals(new long[] {-1L << 60, (1L << 36) - 1, 0, 0}, row);
+      assertTrue(mask.get(199, 2));
+      assertEquals(Boolean.TRUE, mask.uniformValidity(60, 1, 100, 2));
+      assertEquals(Boolean.FALSE, mask.uniformValidity(0, 0, 200, 1));
+      assertEquals(null, mask.uniformValidity(0, 1, 200, 2));
+    }
+  }
+
+  @Test
+  void storesBitsInFileUntilClosed() throws IOException {
+    try (ValidMask mask = new ValidMask(1000, 1000, tempDir)) {
+      mask.setRange(999, 0, 1000);
+
+      try (ValidMask alike = mask.allocateAlike(10, 10)) {
+        assertFalse(alike.get(0, 0));
+        assertEquals(2, countFiles());
+      }
+
+      assertTrue(mask.get(999, 999));
+      assertFalse(mask.get(999, 998));
+      assertEquals(1, countFiles());
+    }
+
+    assertEquals(0, countFiles());
+  }
+
+  private long countFiles() throws IOException {
+    try (Stream<Path> files = Files.list(tempDir)) {
+      return files.count();
+    }
+  }
+}
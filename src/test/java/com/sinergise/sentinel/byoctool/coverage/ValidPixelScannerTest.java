@@ -0,0 +1,113 @@
+package com.sinergise.sentinel.byoctool.coverage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ValidPixelScannerTest {
+
+  private static final int WIDTH = 150;
+
+  @ParameterizedTest
+  @ValueSource(ints = {
+      DataBuffer.TYPE_BYTE,
+      DataBuffer.TYPE_USHORT,
+      DataBuffer.TYPE_SHORT,
+      DataBuffer.TYPE_INT,
+      DataBuffer.TYPE_FLOAT,
+      DataBuffer.TYPE_DOUBLE})
+  void findsRunsOfValidPixels(int dataType) {
+    WritableRaster raster = Raster.createWritableRaster(
+        new BandedSampleModel(dataType, WIDTH, 2, 1), new Point(0, 0));
+    fill(raster, 0, 1, 3, 1);
+    fill(raster, 63, 1, 65, 1);
+    fill(raster, 127, 1, 150, 1);
+
+    assertEquals("[]", runs(raster, 0, 0));
+    assertEquals("[0-3, 63-65, 127-150]", runs(raster, 0, 1));
+    assertEquals("[0-150]", runs(raster, 7, 1));
+  }
+
+  @Test
+  void readsChildRasterOfInterleavedRaster() {
+    WritableRaster parent = Raster.createWritableRaster(
+        new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, WIDTH, 4, 3, 3 * WIDTH,
+            new int[] {2, 1, 0}),
+        new Point(0, 0));
+    fill(parent, 10, 2, 20, 5);
+    Raster child = parent.createChild(5, 2, 100, 2, 0, 0, null);
+
+    assertEquals("[5-15]", runs(child, 0, 0));
+  }
+
+  @Test
+  void matchesNanNoData() {
+    WritableRaster raster = Raster.createWritableRaster(
+        new BandedSampleModel(DataBuffer.TYPE_FLOAT, WIDTH, 1, 1), new Point(0, 0));
+    for (int x = 0; x < WIDTH; x++) {
+      raster.setSample(x, 0, 0, x < 70 ? Float.NaN : 0);
+    }
+
+    assertEquals("[70-150]", runs(raster, Double.NaN, 0));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE})
+  void matchesNanNoDataInEveryLane(int dataType) {
+    WritableRaster raster = Raster.createWritableRaster(
+        new BandedSampleModel(dataType, WIDTH, 1, 1), new Point(0, 0));
+    for (int x = 0; x < WIDTH; x++) {
+      raster.setSample(x, 0, 0, x % 3 == 0 ? Double.NaN : x);
+    }
+
+    String runs = runs(raster, Double.NaN, 0);
+    assertEquals(WIDTH / 3, runs.split(",").length);
+  }
+
+  @Test
+  void fallsBackToRasterSamples() {
+    WritableRaster raster = Raster.createWritableRaster(
+        new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, WIDTH, 1, new int[] {0xFF}),
+        new Point(0, 0));
+    fill(raster, 100, 0, 110, 9);
+
+    assertEquals("[100-110]", runs(raster, 0, 0));
+  }
+
+  private static void fill(WritableRaster raster, int minX, int y, int maxX, double value) {
+    for (int x = minX; x < maxX; x++) {
+      raster.setSample(x, y, 0, value);
+    }
+  }
+
+  /** Returns runs of valid pixels, checking the vectorized scanner finds the same as the scalar. */
+  private static String runs(Raster raster, double noData, int y) {
+    String runs = runs(raster, noData, y, false);
+    assertTrue(ValidPixelScanner.VECTOR_API_AVAILABLE);
+    assertEquals(runs, runs(raster, noData, y, true));
+    return runs;
+  }
+
+  private static String runs(Raster raster, double noData, int y, boolean vectorized) {
+    ValidPixelScanner scanner = ValidPixelScanner.of(raster, noData, vectorized);
+    // dirty the row to check it is cleared
+    long[] rowBits = {-1L, -1L, -1L};
+    scanner.scanRow(y, rowBits);
+
+    List<String> runs = new ArrayList<>();
+    RowBits.forEachRun(rowBits, raster.getWidth(), (start, end) -> runs.add(start + "-" + end));
+    return runs.toString();
+  }
+}
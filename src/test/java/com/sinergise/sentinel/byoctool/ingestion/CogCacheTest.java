@@ -0,0 +1,73 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CogCacheTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void restoreStoredCog() throws IOException {
+    CogCache cache = new CogCache(tempDir.resolve("cache"), 1024);
+    Path input = writeFile("input.tiff", 10);
+    Path cog = writeFile("cog.tiff", 20);
+
+    String key = cache.key(input, "band=1");
+    assertFalse(cache.restore(key, tempDir.resolve("restored.tiff")));
+
+    cache.store(key, cog);
+
+    Path restored = tempDir.resolve("restored.tiff");
+    assertTrue(cache.restore(key, restored));
+    assertArrayEquals(Files.readAllBytes(cog), Files.readAllBytes(restored));
+  }
+
+  @Test
+  void keyDependsOnContentAndOptions() throws IOException {
+    CogCache cache = new CogCache(tempDir.resolve("cache"), 1024);
+    Path input = writeFile("input.tiff", 10);
+    Path sameContent = writeFile("copy.tiff", 10);
+    Path otherContent = writeFile("other.tiff", 11);
+
+    assertEquals(cache.key(input, "band=1"), cache.key(sameContent, "band=1"));
+    assertNotEquals(cache.key(input, "band=1"), cache.key(input, "band=2"));
+    assertNotEquals(cache.key(input, "band=1"), cache.key(otherContent, "band=1"));
+  }
+
+  @Test
+  void evictLeastRecentlyUsed() throws IOException {
+    CogCache cache = new CogCache(tempDir.resolve("cache"), 25);
+    Path first = writeFile("first.tiff", 10);
+    Path second = writeFile("second.tiff", 10);
+    Path third = writeFile("third.tiff", 10);
+
+    cache.store("first", first);
+    cache.store("second", second);
+    Files.setLastModifiedTime(tempDir.resolve("cache/first.tiff"), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(tempDir.resolve("cache/second.tiff"), FileTime.fromMillis(2000));
+
+    cache.store("third", third);
+
+    assertFalse(cache.restore("first", tempDir.resolve("restored1.tiff")));
+    assertTrue(cache.restore("second", tempDir.resolve("restored2.tiff")));
+    assertTrue(cache.restore("third", tempDir.resolve("restored3.tiff")));
+  }
+
+  private Path writeFile(String name, int size) throws IOException {
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) (size + i);
+    }
+
+    return Files.write(tempDir.resolve(name), data);
+  }
+}
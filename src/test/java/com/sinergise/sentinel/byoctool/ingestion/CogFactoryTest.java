@@ -1,19 +1,30 @@
 package com.sinergise.sentinel.byoctool.ingestion;
 
 import com.sinergise.sentinel.byoctool.ingestion.ByocIngestor.BandMap;
+import com.sinergise.sentinel.byoctool.tiff.TestTiffWriter;
 import com.sinergise.sentinel.byoctool.tiff.TiffDirectory.SampleFormat;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class CogFactoryTest {
 
@@ -52,6 +63,158 @@ class CogFactoryTest {
         bandMap);
   }
 
+  @Test
+  void writesMaskOfBandWhileTiling(@TempDir Path tempDir) throws IOException {
+    RecordingBackend backend = new RecordingBackend();
+    Gdal.setBackend(backend);
+
+    try {
+      Path inputFile = Files.createFile(tempDir.resolve("input.tiff"));
+      new CogFactory()
+          .setUseCompressionPredictor(false)
+          .setCreateMasks(true)
+          .createCog(null, inputFile, new BandMap(1, "band"));
+    } finally {
+      Gdal.setBackend(new CliGdalBackend());
+    }
+
+    List<String> tiling = backend.translations.get(1);
+    int mask = tiling.indexOf("-mask");
+    assertTrue(mask >= 0, tiling::toString);
+    assertEquals("mask,1", tiling.get(mask + 1));
+    assertEquals("NO", backend.configs.get(1).get("GDAL_TIFF_INTERNAL_MASK"));
+    assertEquals(-1, backend.translations.get(0).indexOf("-mask"));
+  }
+
+  @Test
+  void cachesCogsByChosenCodec(@TempDir Path tempDir) throws IOException {
+    RecordingBackend backend = new RecordingBackend();
+    Gdal.setBackend(backend);
+    RunReport runReport = new RunReport();
+
+    try {
+      TestTiffWriter writer = new TestTiffWriter();
+      writer.addImage(64, 64, 16).pixels(8, SampleFormat.UINT, new double[64 * 64]);
+      Path inputFile = writer.write(tempDir.resolve("input.tiff"));
+      CogFactory cogFactory = new CogFactory()
+          .setUseCompressionPredictor(false)
+          .setCogCache(new CogCache(Files.createDirectory(tempDir.resolve("cache")), 1 << 20))
+          .setRunReport(runReport);
+      BandMap bandMap = new BandMap(1, "band").setCompression(Compression.AUTO);
+
+      cogFactory.createCog(null, inputFile, bandMap);
+      int translations = backend.translations.size();
+      cogFactory.createCog(null, inputFile, bandMap);
+
+      assertEquals(translations, backend.translations.size());
+    } finally {
+      Gdal.setBackend(new CliGdalBackend());
+    }
+
+    // a baseline and four codec trials of band 1, then the GeoTIFF and the tiled COG
+    assertEquals(7, backend.translations.size());
+    assertTrue(backend.translations.get(0).containsAll(Arrays.asList("-b", "COMPRESS=NONE")));
+    assertTrue(backend.translations.get(6).contains("COMPRESS=ZSTD"));
+    assertEquals(1, runReport.getCompressionChoices().size());
+    assertEquals("ZSTD", runReport.getCompressionChoices().get(0).getChosen());
+  }
+
+  @Test
+  void fallsBackToBigTiffWhenFileIsTooBig(@TempDir Path tempDir) throws IOException {
+    RecordingBackend backend = new RecordingBackend();
+    backend.classicTiffFailure = new RuntimeException("Failed to run command gdal_translate",
+        new IngestionException(
+            "ERROR 1: Maximum TIFF file size exceeded. Use BIGTIFF=YES creation option."));
+
+    List<List<String>> translations = createCog(backend, tempDir);
+
+    assertEquals(3, translations.size());
+    assertTrue(translations.get(1).contains("BIGTIFF=NO"));
+    assertTrue(translations.get(2).contains("BIGTIFF=YES"));
+  }
+
+  @Test
+  void doesNotRetryTimedOutTilingAsBigTiff(@TempDir Path tempDir) {
+    RecordingBackend backend = new RecordingBackend();
+    backend.classicTiffFailure = new RuntimeException("Failed to run command gdal_translate",
+        new IngestionException(
+            "Command gdal_translate -co BIGTIFF=NO timed out after 1 attempt(s) of PT1S."));
+
+    RuntimeException e = assertThrows(RuntimeException.class, () -> createCog(backend, tempDir));
+
+    assertSame(backend.classicTiffFailure, e);
+    assertEquals(2, backend.translations.size());
+  }
+
+  private static List<List<String>> createCog(RecordingBackend backend, Path tempDir)
+      throws IOException {
+    Gdal.setBackend(backend);
+
+    try {
+      Path inputFile = Files.createFile(tempDir.resolve("input.tiff"));
+      new CogFactory()
+          .setUseCompressionPredictor(false)
+          .createCog(null, inputFile, new BandMap(1, "band"));
+    } finally {
+      Gdal.setBackend(new CliGdalBackend());
+    }
+
+    return backend.translations;
+  }
+
+  /**
+   * Records GDAL calls and writes dummy outputs, sized so that the uncompressed baseline has 100
+   * bytes of headers and ZSTD compresses best.
+   */
+  private static class RecordingBackend extends CliGdalBackend {
+
+    private final List<List<String>> translations = new ArrayList<>();
+    private final List<Map<String, String>> configs = new ArrayList<>();
+    private RuntimeException classicTiffFailure;
+
+    @Override
+    public GdalInfo info(Path file) {
+      GdalInfo info = new GdalInfo();
+      info.setBands(Collections.emptyList());
+      return info;
+    }
+
+    @Override
+    public void translate(
+        Path input, Path output, List<String> options, Map<String, String> config) {
+      translations.add(options);
+      configs.add(config);
+
+      if (classicTiffFailure != null && options.contains("BIGTIFF=NO")) {
+        throw classicTiffFailure;
+      }
+
+      int size;
+      if (options.contains("COMPRESS=NONE")) {
+        size = 64 * 64 + 100;
+      } else if (options.contains("COMPRESS=ZSTD")) {
+        size = 100 + 500;
+      } else {
+        size = 100 + 2000;
+      }
+
+      try {
+        Files.write(output, new byte[size]);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void addOverviews(
+        Path file, String resampling, int[] levels, int minSize, Map<String, String> config) {
+    }
+
+    @Override
+    public void checksum(Path file) {
+    }
+  }
+
   private void runCogTest(String inputResource, String outputResource, BandMap bandMap) {
     try {
       Path inputFile = Paths.get(getClass().getResource(inputResource).toURI());
@@ -0,0 +1,43 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import com.sinergise.sentinel.byoctool.ingestion.Compression.Codec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+  @Test
+  void parseCodecWithParameter() {
+    Compression compression = Compression.parse("zstd:9");
+
+    assertEquals(Codec.ZSTD, compression.codec());
+    assertEquals(9.0, compression.parameter());
+    assertEquals(compression, Compression.parse(compression.toString()));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"JPEG", "LZW:1", "AUTO:1", "ZSTD:high", "LERC:0.1:2"})
+  void rejectInvalidValues(String value) {
+    assertThrows(IllegalArgumentException.class, () -> Compression.parse(value));
+  }
+
+  @Test
+  void creationOptions() {
+    assertEquals(
+        Arrays.asList("-co", "COMPRESS=DEFLATE", "-co", "PREDICTOR=2"),
+        Compression.DEFLATE.creationOptions(2));
+
+    assertEquals(
+        Arrays.asList("-co", "COMPRESS=ZSTD", "-co", "ZSTD_LEVEL=15", "-co", "PREDICTOR=3"),
+        Compression.parse("ZSTD:15").creationOptions(3));
+
+    assertEquals(
+        Arrays.asList("-co", "COMPRESS=LERC", "-co", "MAX_Z_ERROR=0.01"),
+        Compression.parse("LERC:0.01").creationOptions(3));
+  }
+}
@@ -0,0 +1,152 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import com.sinergise.sentinel.byoctool.ingestion.CoverageUpdater.UpdateResult;
+import com.sinergise.sentinel.byoctool.ingestion.storage.LocalStorageClient;
+import com.sinergise.sentinel.byoctool.sentinelhub.models.ByocCollection;
+import com.sinergise.sentinel.byoctool.sentinelhub.models.ByocTile;
+import com.sinergise.sentinel.byoctool.tiff.TestTiffWriter;
+import com.sinergise.sentinel.byoctool.tiff.TiffDirectory;
+import com.sinergise.sentinel.byoctool.tiff.TiffDirectory.SampleFormat;
+import org.geojson.Polygon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoverageUpdaterTest {
+
+  private static final int SIZE = 32;
+
+  @TempDir
+  Path tempDir;
+
+  private final List<String> updatedTiles = new ArrayList<>();
+
+  private final ByocClientStub byocClient = new ByocClientStub() {
+    @Override
+    public void updateTile(String collectionId, ByocTile tile) {
+      assertTrue(tile.getCoverGeometry() instanceof Polygon);
+      updatedTiles.add(tile.getId());
+    }
+  };
+
+  @BeforeEach
+  void setUp() {
+    ByocCollection collection = new ByocCollection();
+    collection.setId("collectionId");
+    collection.setS3Bucket("bucket");
+    collection.setAdditionalData(new ByocCollection.AdditionalData());
+    collection.getAdditionalData().setBands(new LinkedHashMap<>());
+    collection.getAdditionalData().getBands().put("B1", Collections.emptyMap());
+    collection.getAdditionalData().getBands().put("B2", Collections.emptyMap());
+    byocClient.addCollection(collection);
+
+    for (String tileId : Arrays.asList("a", "b")) {
+      ByocTile tile = new ByocTile();
+      tile.setId(tileId);
+      tile.setPath(tileId + "/(BAND).tiff");
+      byocClient.addTile(tile);
+    }
+  }
+
+  @Test
+  void skipsTilesWhoseObjectsDidNotChange() throws IOException {
+    for (String object : Arrays.asList("a/B1", "a/B2", "b/B1", "b/B2")) {
+      writeImage(object);
+    }
+    Path checkpoint = tempDir.resolve("checkpoint.tsv");
+
+    UpdateResult first = newUpdater().setCheckpointFile(checkpoint).update("collectionId");
+
+    assertEquals(2, first.getUpdated());
+    assertEquals(0, first.getSkipped());
+    assertEquals(2, Files.readAllLines(checkpoint).size());
+
+    Path changed = tempDir.resolve("bucket/b/B2.tiff");
+    Files.setLastModifiedTime(
+        changed, FileTime.from(Files.getLastModifiedTime(changed).toInstant().plusSeconds(60)));
+    updatedTiles.clear();
+
+    UpdateResult second = newUpdater().setCheckpointFile(checkpoint).update("collectionId");
+
+    assertEquals(1, second.getUpdated());
+    assertEquals(1, second.getSkipped());
+    assertEquals(Collections.singletonList("b"), updatedTiles);
+  }
+
+  @Test
+  void continuesAfterFailedTiles() throws IOException {
+    writeImage("a/B1");
+    writeImage("a/B2");
+    writeImage("b/B1");
+    Path checkpoint = tempDir.resolve("checkpoint.tsv");
+
+    UpdateResult result = newUpdater().setCheckpointFile(checkpoint).update("collectionId");
+
+    assertEquals(1, result.getUpdated());
+    assertEquals(1, result.getFailed());
+    assertEquals(Collections.singletonList("a"), updatedTiles);
+    assertTrue(Files.readAllLines(checkpoint).get(0).startsWith("a\t"));
+  }
+
+  @Test
+  void dryRunUpdatesNothing() throws IOException {
+    for (String object : Arrays.asList("a/B1", "a/B2", "b/B1", "b/B2")) {
+      writeImage(object);
+    }
+    Path checkpoint = tempDir.resolve("checkpoint.tsv");
+
+    List<String> tracedTiles = new ArrayList<>();
+
+    newUpdater()
+        .setCheckpointFile(checkpoint)
+        .setDryRun(true)
+        .setCoverageListener((tile, coverage) -> tracedTiles.add(tile.getId()))
+        .update("collectionId");
+
+    assertTrue(updatedTiles.isEmpty());
+    assertEquals(Arrays.asList("a", "b"), tracedTiles.stream().sorted().toList());
+    assertFalse(Files.exists(checkpoint));
+  }
+
+  @Test
+  void rejectsCollectionWithoutBands() {
+    byocClient.getCollection("collectionId").orElseThrow().getAdditionalData().setBands(null);
+
+    IngestionException e =
+        assertThrows(IngestionException.class, () -> newUpdater().update("collectionId"));
+
+    assertTrue(e.getMessage().contains("no bands"), e.getMessage());
+  }
+
+  private CoverageUpdater newUpdater() {
+    return new CoverageUpdater(byocClient, new LocalStorageClient(tempDir))
+        .setThreads(2)
+        .setCheckpointInterval(1);
+  }
+
+  private void writeImage(String object) throws IOException {
+    double[] pixels = new double[SIZE * SIZE];
+    Arrays.fill(pixels, SIZE * SIZE / 2, pixels.length, 1);
+
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(SIZE, SIZE, 16)
+        .pixels(8, SampleFormat.UINT, pixels)
+        .set(TiffDirectory.TAG_MODEL_PIXEL_SCALE, new double[] {10, 10, 0})
+        .set(TiffDirectory.TAG_MODEL_TIE_POINT, new double[] {0, 0, 0, 500000, 5000000, 0})
+        .set(TiffDirectory.TAG_GEO_KEY_DIRECTORY,
+            new int[] {1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, 32633})
+        .set(TiffDirectory.TAG_GDAL_NO_DATA_VALUE, "0");
+
+    Path file = tempDir.resolve("bucket").resolve(object + ".tiff");
+    Files.createDirectories(file.getParent());
+    writer.write(file);
+  }
+}
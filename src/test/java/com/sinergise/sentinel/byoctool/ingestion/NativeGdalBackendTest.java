@@ -0,0 +1,23 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeGdalBackendTest {
+
+  @Test
+  void overviewLevelsLikeGdaladdo() {
+    assertArrayEquals(new int[]{2, 4, 8}, NativeGdalBackend.overviewLevels(4000, 3000, 512));
+    assertArrayEquals(new int[]{2}, NativeGdalBackend.overviewLevels(1024, 1000, 512));
+    assertArrayEquals(new int[0], NativeGdalBackend.overviewLevels(512, 512, 512));
+  }
+
+  @Test
+  void fallBackToCommandLineWhenLibraryIsMissing() {
+    GdalBackend backend = Gdal.useNativeBackend("/nonexistent/libgdal.so");
+
+    assertTrue(backend instanceof CliGdalBackend);
+    assertSame(backend, Gdal.backend());
+  }
+}
@@ -0,0 +1,117 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import com.sinergise.sentinel.byoctool.ingestion.ProcessRunner.ProcessResult;
+import com.sinergise.sentinel.byoctool.ingestion.ProcessRunner.ProcessStats;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class ProcessRunnerTest {
+
+  @Test
+  void streamsOutputLines() throws Exception {
+    List<String> lines = new ArrayList<>();
+    List<ProcessStats> stats = new ArrayList<>();
+
+    ProcessResult result = new ProcessRunner()
+        .setOutputConsumer(lines::add)
+        .setStatsListener(stats::add)
+        .run(new ProcessBuilder("sh", "-c", "echo a; echo b; exit 3"));
+
+    assertEquals(Arrays.asList("a", "b"), lines);
+    assertEquals("a" + System.lineSeparator() + "b", result.output());
+    assertEquals(3, result.exitCode());
+    assertEquals(1, stats.size());
+    assertEquals("sh", stats.get(0).program());
+    assertFalse(stats.get(0).timedOut());
+  }
+
+  @Test
+  void killsAndRetriesOnTimeout() {
+    List<ProcessStats> stats = new ArrayList<>();
+
+    ProcessRunner runner = new ProcessRunner()
+        .setTimeout(Duration.ofMillis(200))
+        .setRetries(1)
+        .setStatsListener(stats::add);
+
+    assertThrows(IngestionException.class, () -> runner.run(new ProcessBuilder("sleep", "10")));
+    assertEquals(2, stats.size());
+    assertTrue(stats.stream().allMatch(ProcessStats::timedOut));
+    assertTrue(stats.stream().allMatch(s -> s.wallSeconds() < 5));
+  }
+
+  @Test
+  void killsCommandWhenInterrupted() throws Exception {
+    CompletableFuture<Long> pid = new CompletableFuture<>();
+    ProcessRunner runner = new ProcessRunner()
+        .setOutputConsumer(line -> pid.complete(Long.parseLong(line)));
+
+    Thread caller = new Thread(() -> {
+      try {
+        runner.run(new ProcessBuilder("sh", "-c", "echo $$; exec sleep 10"));
+      } catch (Exception e) {
+        // expected
+      }
+    });
+    caller.start();
+    ProcessHandle process = ProcessHandle.of(pid.get(5, TimeUnit.SECONDS)).orElseThrow();
+    caller.interrupt();
+    caller.join(5000);
+
+    assertFalse(caller.isAlive());
+    process.onExit().get(5, TimeUnit.SECONDS);
+    assertFalse(process.isAlive());
+  }
+
+  @Test
+  @EnabledOnOs(OS.LINUX)
+  void recordsResourceUsage() throws Exception {
+    ProcessResult result = new ProcessRunner()
+        .run(new ProcessBuilder("sh", "-c", "i=0; while [ $i -lt 200000 ]; do i=$((i+1)); done"));
+
+    assertEquals(0, result.exitCode());
+    assertTrue(result.stats().cpuSeconds() > 0);
+    assertTrue(result.stats().peakRssKb() > 0);
+  }
+
+  @Test
+  void reportAggregatesPerProgram() {
+    RunReport report = new RunReport();
+    report.addProcessStats(new ProcessStats("gdaladdo", 1, 0.5, 100L, false));
+    report.addProcessStats(new ProcessStats("gdal_translate", 2, 1.5, 300L, false));
+    report.addProcessStats(new ProcessStats("gdal_translate", 3, 2.5, 200L, true));
+
+    List<RunReport.CommandStats> commands = report.getCommandStats();
+    assertEquals("gdal_translate", commands.get(0).getProgram());
+    assertEquals(2, commands.get(0).getRuns());
+    assertEquals(1, commands.get(0).getTimeouts());
+    assertEquals(5, commands.get(0).getWallSeconds(), 1e-9);
+    assertEquals(4, commands.get(0).getCpuSeconds(), 1e-9);
+    assertEquals(300, commands.get(0).getPeakRssKb());
+  }
+
+  @Test
+  void reportKeepsUnknownUsageUnknown() {
+    RunReport report = new RunReport();
+    report.addProcessStats(new ProcessStats("gdaladdo", 1, null, null, false));
+
+    assertNull(report.getCommandStats().get(0).getCpuSeconds());
+    assertNull(report.getCommandStats().get(0).getPeakRssKb());
+
+    report.addProcessStats(new ProcessStats("gdaladdo", 1, 0.5, 100L, false));
+
+    assertEquals(0.5, report.getCommandStats().get(0).getCpuSeconds(), 1e-9);
+    assertEquals(100, report.getCommandStats().get(0).getPeakRssKb());
+  }
+}
@@ -23,6 +23,16 @@ public class TestStorageClient implements ObjectStorageClient {
     public void downloadObject(String bucketName, String key, Path target) {
     }
 
+    @Override
+    public byte[] readRange(String bucketName, String key, long offset, int length) {
+        return new byte[0];
+    }
+
+    @Override
+    public String objectVersion(String bucketName, String key) {
+        return null;
+    }
+
     @Override
     public void close() {
 
@@ -0,0 +1,76 @@
+package com.sinergise.sentinel.byoctool.ingestion;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sinergise.sentinel.byoctool.tiff.TestTiffWriter;
+import com.sinergise.sentinel.byoctool.tiff.TiffDirectory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TileValidationTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void validTile() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      paths.add(writeTiff("band" + i + ".tiff", 32633, 500000));
+    }
+
+    assertTrue(TileValidation.validate(paths).isEmpty());
+  }
+
+  @Test
+  void reportsFileErrorsInOrderAndCrossFileErrors() throws IOException {
+    Path first = writeTiff("a.tiff", 32633, 500000);
+    Path second = writeTiff("b.tiff", 32634, 600000);
+
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(100, 100, 1024);
+    Path third = writer.write(tempDir.resolve("c.tiff"));
+
+    Collection<String> errors = TileValidation.validate(Arrays.asList(first, second, third));
+
+    List<String> expectedStarts = Arrays.asList(
+        "File " + third + " is missing TIFF tag " + TiffDirectory.TAG_GEO_KEY_DIRECTORY,
+        "File " + third + " is missing TIFF tag " + TiffDirectory.TAG_MODEL_TIE_POINT,
+        "File " + third + " is missing TIFF tag " + TiffDirectory.TAG_MODEL_PIXEL_SCALE,
+        "Files have different coordinate reference systems.",
+        "Files have different values in TIFF tag " + TiffDirectory.TAG_MODEL_TIE_POINT);
+
+    List<String> errorList = new ArrayList<>(errors);
+    assertEquals(expectedStarts.size(), errorList.size(), errorList.toString());
+    for (int i = 0; i < expectedStarts.size(); i++) {
+      assertTrue(errorList.get(i).startsWith(expectedStarts.get(i)), errorList.get(i));
+    }
+  }
+
+  @Test
+  void propagatesReadErrors() throws IOException {
+    Path valid = writeTiff("a.tiff", 32633, 500000);
+    Path missing = tempDir.resolve("missing.tiff");
+
+    assertThrows(IOException.class, () -> TileValidation.validate(Arrays.asList(valid, missing)));
+  }
+
+  private Path writeTiff(String name, int epsgCode, double x) throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(100, 100, 1024)
+        .set(TiffDirectory.TAG_MODEL_PIXEL_SCALE, new double[] {10, 10, 0})
+        .set(TiffDirectory.TAG_MODEL_TIE_POINT, new double[] {0, 0, 0, x, 5000000, 0})
+        .set(TiffDirectory.TAG_GEO_KEY_DIRECTORY,
+            new int[] {1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, epsgCode});
+
+    return writer.write(tempDir.resolve(name));
+  }
+}
@@ -0,0 +1,44 @@
+package com.sinergise.sentinel.byoctool.ingestion.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LocalStorageClientTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void storeAndRead() throws IOException {
+    LocalStorageClient client = new LocalStorageClient(tempDir);
+    byte[] data = {1, 2, 3, 4, 5};
+
+    client.store("bucket", "a/b.tiff", data);
+
+    try (InputStream is = client.getObjectAsStream("bucket", "a/b.tiff")) {
+      assertArrayEquals(data, is.readAllBytes());
+    }
+
+    Path downloaded = tempDir.resolve("downloaded");
+    client.downloadObject("bucket", "a/b.tiff", downloaded);
+    assertArrayEquals(data, Files.readAllBytes(downloaded));
+
+    assertArrayEquals(new byte[] {2, 3}, client.readRange("bucket", "a/b.tiff", 1, 2));
+    assertArrayEquals(new byte[] {4, 5}, client.readRange("bucket", "a/b.tiff", 3, 10));
+  }
+
+  @Test
+  void rejectsKeysOutsideOfBucket() {
+    LocalStorageClient client = new LocalStorageClient(tempDir);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> client.store("bucket", "../other/b.tiff", new byte[1]));
+  }
+}
@@ -0,0 +1,66 @@
+package com.sinergise.sentinel.byoctool.ingestion.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sinergise.sentinel.byoctool.tiff.TestTiffWriter;
+import com.sinergise.sentinel.byoctool.tiff.TiffMetadata;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ObjectTiffSourceTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void readsHeaderOfLargeObjectWithOneRequest() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(4000, 3000, 1024);
+    writer.addImage(2000, 1500, 1024);
+    Path file = writer.write(tempDir.resolve("cog.tiff"));
+    Files.write(file, new byte[10 * 1024 * 1024], StandardOpenOption.APPEND);
+
+    LocalStorageClient client = new LocalStorageClient(tempDir.resolve("storage"));
+    client.store("bucket", "tile/B01.tiff", file);
+
+    ObjectTiffSource source = new ObjectTiffSource(client, "bucket", "tile/B01.tiff");
+    TiffMetadata metadata = TiffMetadata.read(source);
+
+    assertEquals(2, metadata.directoryCount());
+    assertEquals(1500, metadata.images().get(1).height());
+    assertTrue(source.getBytesRead() <= ObjectTiffSource.BLOCK_SIZE);
+  }
+
+  @Test
+  void readsAcrossBlocks() throws IOException {
+    byte[] data = new byte[3 * ObjectTiffSource.BLOCK_SIZE + 10];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+
+    LocalStorageClient client = new LocalStorageClient(tempDir);
+    client.store("bucket", "data", data);
+    ObjectTiffSource source = new ObjectTiffSource(client, "bucket", "data");
+
+    int offset = ObjectTiffSource.BLOCK_SIZE - 5;
+    assertArrayEquals(
+        Arrays.copyOfRange(data, offset, offset + 10), source.read(offset, 10).array());
+
+    int largeOffset = 7;
+    int largeLength = 2 * ObjectTiffSource.BLOCK_SIZE;
+    assertArrayEquals(
+        Arrays.copyOfRange(data, largeOffset, largeOffset + largeLength),
+        source.read(largeOffset, largeLength).array());
+
+    assertThrows(EOFException.class, () -> source.read(data.length - 5, 10));
+  }
+}
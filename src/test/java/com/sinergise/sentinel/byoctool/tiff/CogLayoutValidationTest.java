@@ -0,0 +1,86 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import static com.twelvemonkeys.imageio.metadata.tiff.TIFF.TAG_TILE_BYTE_COUNTS;
+import static com.twelvemonkeys.imageio.metadata.tiff.TIFF.TAG_TILE_HEIGTH;
+import static com.twelvemonkeys.imageio.metadata.tiff.TIFF.TAG_TILE_OFFSETS;
+import static com.twelvemonkeys.imageio.metadata.tiff.TIFF.TAG_TILE_WIDTH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CogLayoutValidationTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void validCog() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(4000, 3000, 1024);
+    writer.addImage(2000, 1500, 1024);
+    writer.addImage(1000, 750, 1024);
+
+    assertTrue(validate(writer).isEmpty());
+  }
+
+  @Test
+  void ifdsAfterData() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter().dataFirst();
+    writer.addImage(4000, 3000, 1024);
+
+    assertError(validate(writer), "IFDs located after tile data");
+  }
+
+  @Test
+  void largestOverviewDataFirst() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter().largestDataFirst();
+    writer.addImage(4000, 3000, 1024);
+    writer.addImage(2000, 1500, 1024);
+
+    assertError(validate(writer), "tile data of overview 1 located after");
+  }
+
+  @Test
+  void overviewNotSmaller() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(2000, 1500, 1024);
+    writer.addImage(2000, 1500, 1024);
+
+    assertError(validate(writer), "overview 1 which is not smaller");
+  }
+
+  @Test
+  void wrongTileSize() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(2000, 1500, 512);
+
+    assertError(validate(writer), "tiles of 512x512 instead of 1024x1024");
+  }
+
+  @Test
+  void notTiled() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(100, 100, 1024)
+        .remove(TAG_TILE_WIDTH)
+        .remove(TAG_TILE_HEIGTH)
+        .remove(TAG_TILE_OFFSETS)
+        .remove(TAG_TILE_BYTE_COUNTS);
+
+    assertError(validate(writer), "not tiled");
+  }
+
+  private List<String> validate(TestTiffWriter writer) throws IOException {
+    Path file = writer.write(tempDir.resolve("cog.tiff"));
+    return CogLayoutValidation.validate(file, 1024);
+  }
+
+  private static void assertError(List<String> errors, String message) {
+    assertEquals(1, errors.size(), errors.toString());
+    assertTrue(errors.get(0).contains(message), errors.get(0));
+  }
+}
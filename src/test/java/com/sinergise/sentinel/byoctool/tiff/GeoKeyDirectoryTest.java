@@ -0,0 +1,73 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GeoKeyDirectoryTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void projectedCrs() {
+    GeoKeyDirectory directory = GeoKeyDirectory.decode(
+        new int[] {1, 1, 0, 3, 1024, 0, 1, 1, 1026, 34737, 13, 0, 3072, 0, 1, 32633},
+        null,
+        "ETRS89 / foo|");
+
+    assertEquals(32633, directory.epsgCode());
+    assertEquals("ETRS89 / foo", directory.asciiValue(1026));
+  }
+
+  @Test
+  void geographicCrs() {
+    GeoKeyDirectory directory = GeoKeyDirectory.decode(
+        new int[] {1, 1, 0, 3, 1024, 0, 1, 2, 2048, 0, 1, 4326, 2057, 34736, 1, 0},
+        new double[] {6378137.0},
+        null);
+
+    assertEquals(4326, directory.epsgCode());
+    assertArrayEquals(new double[] {6378137.0}, directory.doubleValue(2057));
+  }
+
+  @Test
+  void userDefinedCrs() {
+    GeoKeyDirectory directory = GeoKeyDirectory.decode(
+        new int[] {1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, GeoKeyDirectory.USER_DEFINED},
+        null,
+        null);
+
+    assertNull(directory.epsgCode());
+  }
+
+  @Test
+  void userDefinedCrsFallsBackToCitation() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(100, 100, 1024)
+        .set(TiffDirectory.TAG_GEO_KEY_DIRECTORY,
+            new int[] {1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, GeoKeyDirectory.USER_DEFINED})
+        .set(TiffDirectory.TAG_GEO_ASCII_PARAMS, "WGS 84 / UTM zone 12S|WGS 84|");
+
+    TiffMetadata metadata = TiffMetadata.read(writer.write(tempDir.resolve("a.tiff")));
+
+    assertEquals(32712, metadata.epsgCode());
+  }
+
+  @Test
+  void epsgCodeFromTiffWithoutCitation() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(100, 100, 1024)
+        .set(TiffDirectory.TAG_GEO_KEY_DIRECTORY,
+            new int[] {1, 1, 0, 2, 1024, 0, 1, 1, 3072, 0, 1, 3857});
+
+    TiffMetadata metadata = TiffMetadata.read(writer.write(tempDir.resolve("a.tiff")));
+
+    assertEquals(3857, metadata.epsgCode());
+  }
+}
@@ -0,0 +1,356 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import static com.twelvemonkeys.imageio.metadata.tiff.TIFF.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes small TIFF files with tiled images, whose tiles hold a single dummy byte, so tests can
+ * check header parsing without GDAL.
+ */
+public class TestTiffWriter {
+
+  private final List<Image> images = new ArrayList<>();
+  private boolean dataFirst;
+  private boolean largestDataFirst;
+  private boolean bigTiff;
+  private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+
+  public Image addImage(long width, long height, long tileSize) {
+    Image image = new Image(width, height, tileSize);
+    images.add(image);
+    return image;
+  }
+
+  public TestTiffWriter dataFirst() {
+    dataFirst = true;
+    return this;
+  }
+
+  public TestTiffWriter largestDataFirst() {
+    largestDataFirst = true;
+    return this;
+  }
+
+  public TestTiffWriter bigTiff() {
+    bigTiff = true;
+    return this;
+  }
+
+  public TestTiffWriter bigEndian() {
+    byteOrder = ByteOrder.BIG_ENDIAN;
+    return this;
+  }
+
+  public Path write(Path file) throws IOException {
+    int headerSize = bigTiff ? 16 : 8;
+    int dataSize = images.stream().mapToInt(Image::dataSize).sum();
+    int ifdsSize = images.stream().mapToInt(image -> image.size(bigTiff)).sum();
+
+    int ifdsStart = dataFirst ? headerSize + dataSize : headerSize;
+    int dataStart = dataFirst ? headerSize : headerSize + ifdsSize;
+
+    int dataOffset = dataStart;
+    for (int i = 0; i < images.size(); i++) {
+      Image image = images.get(largestDataFirst ? i : images.size() - 1 - i);
+      if (image.tileCount() == 0) {
+        continue;
+      }
+      long[] offsets = new long[image.tileCount()];
+      for (int t = 0; t < offsets.length; t++) {
+        if (image.sparseTiles.contains(t)) {
+          continue;
+        }
+        offsets[t] = dataOffset;
+        dataOffset += image.tileBytes();
+      }
+      image.entries.put(TAG_TILE_OFFSETS, offsets);
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(headerSize + dataSize + ifdsSize).order(byteOrder);
+    buffer.putShort(byteOrder == ByteOrder.LITTLE_ENDIAN
+        ? BYTE_ORDER_MARK_LITTLE_ENDIAN
+        : BYTE_ORDER_MARK_BIG_ENDIAN);
+
+    if (bigTiff) {
+      buffer.putShort((short) BIGTIFF_MAGIC).putShort((short) 8).putShort((short) 0).putLong(ifdsStart);
+    } else {
+      buffer.putShort((short) TIFF_MAGIC).putInt(ifdsStart);
+    }
+
+    int ifdOffset = ifdsStart;
+    for (int i = 0; i < images.size(); i++) {
+      Image image = images.get(i);
+      int size = image.size(bigTiff);
+      int nextIfdOffset = i == images.size() - 1 ? 0 : ifdOffset + size;
+      image.write(buffer, bigTiff, ifdOffset, nextIfdOffset);
+      image.writeTiles(buffer);
+      ifdOffset += size;
+    }
+
+    Files.write(file, buffer.array());
+    return file;
+  }
+
+  public static class Image {
+
+    private final Map<Integer, Object> entries = new TreeMap<>();
+    private final Set<Integer> sparseTiles = new HashSet<>();
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tileCount;
+    private int bytesPerSample;
+    private int sampleFormat;
+    private double[] pixels;
+
+    Image(long width, long height, long tileSize) {
+      this.width = (int) width;
+      this.height = (int) height;
+      this.tileSize = (int) tileSize;
+      tileCount = (int) (((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize));
+      entries.put(TAG_IMAGE_WIDTH, new long[] {width});
+      entries.put(TAG_IMAGE_HEIGHT, new long[] {height});
+      entries.put(TAG_BITS_PER_SAMPLE, new long[] {8});
+      entries.put(TAG_TILE_WIDTH, new long[] {tileSize});
+      entries.put(TAG_TILE_HEIGTH, new long[] {tileSize});
+      entries.put(TAG_TILE_OFFSETS, new long[tileCount]);
+      entries.put(TAG_TILE_BYTE_COUNTS, filled(tileCount, 1));
+    }
+
+    /**
+     * Sets an entry, stored as LONG for a long[] value, DOUBLE for a double[] value, SHORT for an
+     * int[] value and ASCII for a String value.
+     */
+    public Image set(int tag, Object value) {
+      entries.put(tag, value);
+      return this;
+    }
+
+    /**
+     * Stores the given row-major pixel values in uncompressed tiles, so the image can be decoded.
+     */
+    public Image pixels(int bitsPerSample, int sampleFormat, double[] pixels) {
+      this.bytesPerSample = bitsPerSample / 8;
+      this.sampleFormat = sampleFormat;
+      this.pixels = pixels;
+
+      entries.put(TAG_BITS_PER_SAMPLE, new int[] {bitsPerSample});
+      entries.put(TAG_SAMPLE_FORMAT, new int[] {sampleFormat});
+      entries.put(TAG_COMPRESSION, new int[] {1});
+      entries.put(TAG_PHOTOMETRIC_INTERPRETATION, new int[] {1});
+      entries.put(TAG_SAMPLES_PER_PIXEL, new int[] {1});
+      entries.put(TAG_TILE_BYTE_COUNTS, filled(tileCount, tileBytes()));
+      sparse(sparseTiles.stream().mapToInt(Integer::intValue).toArray());
+      return this;
+    }
+
+    /**
+     * Leaves the tiles at the given indices out of the file with zero offsets and byte counts, as
+     * GDAL does for tiles of only no-data in sparse files.
+     */
+    public Image sparse(int... tiles) {
+      long[] byteCounts = (long[]) entries.get(TAG_TILE_BYTE_COUNTS);
+      for (int tile : tiles) {
+        sparseTiles.add(tile);
+        byteCounts[tile] = 0;
+      }
+      return this;
+    }
+
+    public Image remove(int tag) {
+      entries.remove(tag);
+      return this;
+    }
+
+    int tileCount() {
+      return entries.containsKey(TAG_TILE_OFFSETS) ? tileCount : 0;
+    }
+
+    int tileBytes() {
+      return pixels == null ? 1 : tileSize * tileSize * bytesPerSample;
+    }
+
+    int dataSize() {
+      return tileCount() == 0 ? 0 : (tileCount() - sparseTiles.size()) * tileBytes();
+    }
+
+    void writeTiles(ByteBuffer buffer) {
+      if (pixels == null || tileCount() == 0) {
+        return;
+      }
+
+      long[] offsets = (long[]) entries.get(TAG_TILE_OFFSETS);
+      int tilesAcross = (width + tileSize - 1) / tileSize;
+
+      for (int t = 0; t < offsets.length; t++) {
+        if (sparseTiles.contains(t)) {
+          continue;
+        }
+        buffer.position((int) offsets[t]);
+        int tileX = (t % tilesAcross) * tileSize;
+        int tileY = (t / tilesAcross) * tileSize;
+
+        for (int y = tileY; y < tileY + tileSize; y++) {
+          for (int x = tileX; x < tileX + tileSize; x++) {
+            double value = x < width && y < height ? pixels[y * width + x] : 0;
+            putSample(buffer, value);
+          }
+        }
+      }
+    }
+
+    private void putSample(ByteBuffer buffer, double value) {
+      if (sampleFormat == TiffDirectory.SampleFormat.IEEEFP) {
+        if (bytesPerSample == 4) {
+          buffer.putFloat((float) value);
+        } else {
+          buffer.putDouble(value);
+        }
+      } else if (bytesPerSample == 1) {
+        buffer.put((byte) value);
+      } else if (bytesPerSample == 2) {
+        buffer.putShort((short) value);
+      } else {
+        buffer.putInt((int) value);
+      }
+    }
+
+    int size(boolean bigTiff) {
+      int fieldSize = bigTiff ? 8 : 4;
+      int size = tableSize(bigTiff);
+      for (Object value : entries.values()) {
+        int valueSize = valueSize(value);
+        if (valueSize > fieldSize) {
+          size += valueSize;
+        }
+      }
+      return size;
+    }
+
+    private int tableSize(boolean bigTiff) {
+      return bigTiff ? 8 + entries.size() * 20 + 8 : 2 + entries.size() * 12 + 4;
+    }
+
+    void write(ByteBuffer buffer, boolean bigTiff, int offset, int nextIfdOffset) {
+      int fieldSize = bigTiff ? 8 : 4;
+      int externalOffset = offset + tableSize(bigTiff);
+
+      buffer.position(offset);
+      if (bigTiff) {
+        buffer.putLong(entries.size());
+      } else {
+        buffer.putShort((short) entries.size());
+      }
+
+      for (Map.Entry<Integer, Object> entry : entries.entrySet()) {
+        Object value = entry.getValue();
+        int valueSize = valueSize(value);
+
+        buffer.putShort(entry.getKey().shortValue());
+        buffer.putShort(type(value));
+        if (bigTiff) {
+          buffer.putLong(count(value));
+        } else {
+          buffer.putInt(count(value));
+        }
+
+        if (valueSize > fieldSize) {
+          if (bigTiff) {
+            buffer.putLong(externalOffset);
+          } else {
+            buffer.putInt(externalOffset);
+          }
+          int position = buffer.position();
+          buffer.position(externalOffset);
+          putValue(buffer, value);
+          buffer.position(position);
+          externalOffset += valueSize;
+        } else {
+          int position = buffer.position();
+          putValue(buffer, value);
+          buffer.position(position + fieldSize);
+        }
+      }
+
+      if (bigTiff) {
+        buffer.putLong(nextIfdOffset);
+      } else {
+        buffer.putInt(nextIfdOffset);
+      }
+    }
+
+    private static short type(Object value) {
+      if (value instanceof long[]) {
+        return TYPE_LONG;
+      } else if (value instanceof double[]) {
+        return TYPE_DOUBLE;
+      } else if (value instanceof int[]) {
+        return TYPE_SHORT;
+      }
+      return TYPE_ASCII;
+    }
+
+    private static int count(Object value) {
+      if (value instanceof long[]) {
+        return ((long[]) value).length;
+      } else if (value instanceof double[]) {
+        return ((double[]) value).length;
+      } else if (value instanceof int[]) {
+        return ((int[]) value).length;
+      }
+      return ascii(value).length;
+    }
+
+    private static int valueSize(Object value) {
+      if (value instanceof long[]) {
+        return 4 * count(value);
+      } else if (value instanceof double[]) {
+        return 8 * count(value);
+      } else if (value instanceof int[]) {
+        return 2 * count(value);
+      }
+      return count(value);
+    }
+
+    private static void putValue(ByteBuffer buffer, Object value) {
+      if (value instanceof long[]) {
+        for (long v : (long[]) value) {
+          buffer.putInt((int) v);
+        }
+      } else if (value instanceof double[]) {
+        for (double v : (double[]) value) {
+          buffer.putDouble(v);
+        }
+      } else if (value instanceof int[]) {
+        for (int v : (int[]) value) {
+          buffer.putShort((short) v);
+        }
+      } else {
+        buffer.put(ascii(value));
+      }
+    }
+
+    private static byte[] ascii(Object value) {
+      return (value + "\0").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long[] filled(int length, long value) {
+      long[] values = new long[length];
+      Arrays.fill(values, value);
+      return values;
+    }
+  }
+}
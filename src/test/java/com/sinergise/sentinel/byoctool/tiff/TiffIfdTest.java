@@ -0,0 +1,89 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TiffIfdTest {
+
+  @TempDir
+  Path tempDir;
+
+  @ParameterizedTest
+  @ValueSource(strings = {"classic", "bigEndian", "bigTiff", "bigTiffBigEndian"})
+  void readsEntriesOnDemand(String variant) throws IOException {
+    TestTiffWriter writer = variant(variant).apply(new TestTiffWriter());
+    writer.addImage(3000, 2000, 1024)
+        .set(TiffDirectory.TAG_MODEL_TIE_POINT, new double[] {0, 0, 0, 500000, 5000000, 0})
+        .set(TiffDirectory.TAG_GDAL_NO_DATA_VALUE, "-9999");
+    writer.addImage(1500, 1000, 1024);
+    Path file = writer.write(tempDir.resolve("a.tiff"));
+
+    try (TiffSource source = new FileTiffSource(file)) {
+      List<TiffIfd> ifds = TiffIfd.readAll(source);
+
+      assertEquals(2, ifds.size());
+      assertEquals(3000, ifds.get(0).firstLong(256));
+      assertEquals(6, ifds.get(0).longs(324).length);
+      assertArrayEquals(
+          new double[] {0, 0, 0, 500000, 5000000, 0}, ifds.get(0).doubles(33922));
+      assertEquals("-9999", ifds.get(0).ascii(42113));
+      assertEquals(1000, ifds.get(1).firstLong(257));
+      assertFalse(ifds.get(1).contains(33922));
+      assertNull(ifds.get(1).longs(33922));
+    }
+  }
+
+  @Test
+  void readsBeyondBufferedHeaderRegion() throws IOException {
+    byte[] bytes = new byte[FileTiffSource.HEADER_REGION_SIZE + 100];
+    bytes[FileTiffSource.HEADER_REGION_SIZE - 1] = 1;
+    bytes[FileTiffSource.HEADER_REGION_SIZE] = 2;
+    bytes[FileTiffSource.HEADER_REGION_SIZE + 99] = 3;
+    Path file = Files.write(tempDir.resolve("large"), bytes);
+
+    try (TiffSource source = new FileTiffSource(file)) {
+      assertEquals(0, source.read(0, 8).get(0));
+      ByteBuffer buffer = source.read(FileTiffSource.HEADER_REGION_SIZE - 1, 2);
+      assertEquals(1, buffer.get(0));
+      assertEquals(2, buffer.get(1));
+      assertEquals(3, source.read(FileTiffSource.HEADER_REGION_SIZE + 99, 1).get(0));
+      assertThrows(IOException.class, () -> source.read(FileTiffSource.HEADER_REGION_SIZE, 101));
+    }
+  }
+
+  @Test
+  void rejectsNonTiff() throws IOException {
+    Path file = Files.write(tempDir.resolve("a.txt"), "not a tiff".getBytes());
+
+    try (TiffSource source = new FileTiffSource(file)) {
+      assertThrows(IOException.class, () -> TiffIfd.readAll(source));
+    }
+  }
+
+  private static UnaryOperator<TestTiffWriter> variant(String variant) {
+    switch (variant) {
+      case "bigEndian":
+        return TestTiffWriter::bigEndian;
+      case "bigTiff":
+        return TestTiffWriter::bigTiff;
+      case "bigTiffBigEndian":
+        return writer -> writer.bigTiff().bigEndian();
+      default:
+        return UnaryOperator.identity();
+    }
+  }
+}
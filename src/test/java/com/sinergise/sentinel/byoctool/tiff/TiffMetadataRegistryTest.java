@@ -0,0 +1,68 @@
+package com.sinergise.sentinel.byoctool.tiff;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TiffMetadataRegistryTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void readsMetadata() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(2000, 1000, 1024)
+        .set(TiffDirectory.TAG_MODEL_PIXEL_SCALE, new double[] {10, 20, 0})
+        .set(TiffDirectory.TAG_MODEL_TIE_POINT, new double[] {0, 0, 0, 500000, 5000000, 0})
+        .set(TiffDirectory.TAG_GEO_ASCII_PARAMS, "WGS 84 / UTM zone 33N|WGS 84|")
+        .set(TiffDirectory.TAG_GDAL_NO_DATA_VALUE, "0");
+    writer.addImage(1000, 500, 1024);
+
+    TiffMetadata metadata = TiffMetadataRegistry.get(writer.write(tempDir.resolve("a.tiff")));
+
+    assertEquals(2000, metadata.imageWidth());
+    assertEquals(1000, metadata.imageHeight());
+    assertEquals(2, metadata.directoryCount());
+    assertEquals(500, metadata.images().get(1).height());
+    assertEquals(32633, metadata.epsgCode());
+    assertEquals(0, metadata.noDataValueAsInt());
+    assertEquals(520000, metadata.envelope().getMaxX());
+    assertEquals(4980000, metadata.envelope().getMinY());
+  }
+
+  @Test
+  void reusesMetadataOfUnchangedFile() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(2000, 1000, 1024);
+    Path file = writer.write(tempDir.resolve("a.tiff"));
+
+    TiffMetadata metadata = TiffMetadataRegistry.get(file);
+    assertSame(metadata, TiffMetadataRegistry.get(file));
+
+    writer.addImage(1000, 500, 1024);
+    writer.write(file);
+
+    TiffMetadata changed = TiffMetadataRegistry.get(file);
+    assertNotSame(metadata, changed);
+    assertEquals(2, changed.directoryCount());
+  }
+
+  @Test
+  void sharedMetadataCannotBeModified() throws IOException {
+    TestTiffWriter writer = new TestTiffWriter();
+    writer.addImage(2000, 1000, 1024);
+    Path file = writer.write(tempDir.resolve("a.tiff"));
+
+    TiffMetadata.Image image = TiffMetadataRegistry.get(file).images().get(0);
+    long firstTileOffset = image.tileOffsets()[0];
+    image.tileOffsets()[0] = 0;
+
+    assertEquals(firstTileOffset, TiffMetadataRegistry.get(file).images().get(0).tileOffsets()[0]);
+  }
+}